@@ -0,0 +1,75 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+
+/**
+ * Runs a benchmark and reports its throughput and how much it allocates. Each
+ * benchmark is warmed up first so the JIT has compiled it, then timed over a
+ * number of measured iterations.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class BenchmarkRunner {
+    private int warmupIterations;
+    private int measuredIterations;
+    private com.sun.management.ThreadMXBean threads;
+
+    /**
+     * Public constructor.
+     *
+     * @param warmupIterations how many times to run each benchmark before
+     * measuring it.
+     * @param measuredIterations how many times to run each benchmark while
+     * measuring it.
+     */
+    public BenchmarkRunner(int warmupIterations, int measuredIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+        this.threads = (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+    }
+
+    /**
+     * Runs a benchmark and prints its results. Allocation is only counted on
+     * the calling thread, so benchmarks that do their work on other threads
+     * under-report it.
+     *
+     * @param name the name of the benchmark.
+     * @param bytesPerOp how many bytes of payload each operation handles, used
+     * to report bandwidth, or 0 if that does not apply.
+     * @param benchmark the operation to measure.
+     * @throws Exception if the benchmark fails.
+     */
+    public void run(String name, long bytesPerOp, Callable<?> benchmark)
+        throws Exception {
+        Object sink = null;
+        for (int i = 0; i < this.warmupIterations; i++) {
+            sink = benchmark.call();
+        }
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = this.threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < this.measuredIterations; i++) {
+            sink = benchmark.call();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = this.threads.getThreadAllocatedBytes(threadId)
+            - allocatedBefore;
+
+        double seconds = elapsed / 1e9;
+        double opsPerSecond = this.measuredIterations / seconds;
+        StringBuilder line = new StringBuilder(String.format(
+            "%-32s %12.2f ops/s %12.3f ms/op %14d B/op", name, opsPerSecond,
+            elapsed / 1e6 / this.measuredIterations,
+            allocated / this.measuredIterations));
+        if (bytesPerOp > 0) {
+            line.append(String.format(" %10.1f MB/s",
+                bytesPerOp * opsPerSecond / (1024 * 1024)));
+        }
+        System.out.println(line);
+        if (sink == this) {
+            // Keeps the JIT from throwing the results away.
+            System.out.println();
+        }
+    }
+}
@@ -0,0 +1,1309 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A stand-in for the GitHub API that runs in process over plain HTTP, so
+ * submissions can be benchmarked and retries checked without a network.
+ * It implements the endpoints the tool uses against an in-memory model of
+ * each repository: creating and listing repositories, adding collaborators,
+ * the contents API, the Git Data API (blobs, trees, commits and refs), and
+ * zipballs. Blob SHAs are computed the way git computes them, so they match
+ * FileContent.getBlobSha. GETs carry an ETag and are answered with a 304
+ * when the client sends it back. Responses are gzipped for clients that
+ * accept it. Like GitHub, gzipped request bodies are turned down with a 415
+ * unless the server is told to accept them.
+ *
+ * Latency, error responses, dropped connections and rate limiting can be
+ * injected. Random faults come from a seeded generator, so a run with the
+ * same seed and the same requests fails the same way every time.
+ *
+ * Point a GitHubHttpsService at getURL() to use it. It can also be run on its
+ * own, to point the jar at with hostURL.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class FakeGitHubServer {
+    /**
+     * Passed as a status to drop the connection without responding at all.
+     */
+    public static final int RESET = 0;
+    private static final int DEFAULT_PAGE_SIZE = 30;
+    private static final String DEFAULT_BRANCH = "main";
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private Map<String, Repository> repositories;
+    private AtomicLong requests;
+    private AtomicLong faults;
+    private volatile long latencyMillis;
+    private volatile boolean compressedRequests;
+    private AtomicLong bytesReceived;
+    private AtomicLong bytesSent;
+    private List<Fault> scheduledFaults;
+    private Random random;
+    private double faultProbability;
+    private int[] randomStatuses;
+    private int rateLimit;
+    private long rateLimitWindowSeconds;
+    private int rateLimitRemaining;
+    private long rateLimitReset;
+
+    /**
+     * Public constructor. The server does not accept requests until it is
+     * started.
+     *
+     * @param port the port to listen on, or 0 for any free port.
+     * @throws IOException if the port could not be bound.
+     */
+    public FakeGitHubServer(int port) throws IOException {
+        // Without this, small responses wait on delayed acknowledgements and
+        // every request takes tens of milliseconds longer than it should.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.server = HttpServer.create(
+            new InetSocketAddress("127.0.0.1", port), 0);
+        this.server.createContext("/", this::handle);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fake-github");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(this.executor);
+        this.repositories = new HashMap<>();
+        this.requests = new AtomicLong();
+        this.faults = new AtomicLong();
+        this.bytesReceived = new AtomicLong();
+        this.bytesSent = new AtomicLong();
+        this.scheduledFaults = new LinkedList<>();
+        this.randomStatuses = new int[0];
+        setRateLimit(5000, 60 * 60);
+    }
+
+    /**
+     * Runs the server until it is killed.
+     *
+     * @param args the port (default 8080), the latency of every request in
+     * milliseconds (default 0), and the probability that a request fails
+     * with a 500, 502, 503 or a dropped connection (default 0).
+     * @throws IOException if the server could not be started.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        FakeGitHubServer server = new FakeGitHubServer(port);
+        if (args.length > 1) {
+            server.setLatency(Long.parseLong(args[1]));
+        }
+        if (args.length > 2) {
+            server.failRandomly(Double.parseDouble(args[2]), 1331, 500, 502,
+                503, RESET);
+        }
+        server.start();
+        System.out.println("Listening on " + server.getURL());
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        this.server.start();
+    }
+
+    /**
+     * Stops accepting requests, and waits up to a second for the ones in
+     * progress to finish.
+     */
+    public void stop() {
+        this.server.stop(1);
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * @return the url to use as hostURL.
+     */
+    public String getURL() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * Sets how long every request takes before it is handled.
+     *
+     * @param latencyMillis the latency in milliseconds.
+     */
+    public void setLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Makes the next few requests that match fail. Scheduled failures are
+     * used up in the order they were added.
+     *
+     * @param verb the verb of the requests to fail (e.g. GET, PUT, PATCH), or
+     * null for any verb.
+     * @param path a regular expression the whole path has to match.
+     * @param status the status to respond with, or RESET to drop the
+     * connection.
+     * @param times how many requests to fail.
+     */
+    public synchronized void failNext(String verb, String path, int status,
+        int times) {
+        Pattern pattern = Pattern.compile(path);
+        for (int i = 0; i < times; i++) {
+            this.scheduledFaults.add(new Fault(verb, pattern, status));
+        }
+    }
+
+    /**
+     * Makes any request fail with some probability.
+     *
+     * @param probability the chance each request fails, from 0 to 1.
+     * @param seed the seed of the random generator.
+     * @param statuses the statuses to pick from when a request fails, where
+     * RESET drops the connection.
+     */
+    public synchronized void failRandomly(double probability, long seed,
+        int... statuses) {
+        this.faultProbability = probability;
+        this.random = new Random(seed);
+        this.randomStatuses = statuses.clone();
+    }
+
+    /**
+     * Sets the primary rate limit. Once a window's requests are used up,
+     * every request is refused with a 403 until the window resets.
+     *
+     * @param limit the number of requests allowed per window.
+     * @param windowSeconds how long a window is.
+     */
+    public synchronized void setRateLimit(int limit, long windowSeconds) {
+        this.rateLimit = limit;
+        this.rateLimitWindowSeconds = windowSeconds;
+        this.rateLimitRemaining = limit;
+        this.rateLimitReset = System.currentTimeMillis() / 1000
+            + windowSeconds;
+    }
+
+    /**
+     * @return how many requests have been received.
+     */
+    public long getRequestCount() {
+        return this.requests.get();
+    }
+
+    /**
+     * @return how many requests were failed on purpose.
+     */
+    public long getFaultCount() {
+        return this.faults.get();
+    }
+
+    /**
+     * Sets whether request bodies may be gzipped.
+     *
+     * @param compressedRequests whether to accept gzipped request bodies.
+     */
+    public void setAcceptCompressedRequests(boolean compressedRequests) {
+        this.compressedRequests = compressedRequests;
+    }
+
+    /**
+     * @return how many bytes of request bodies have been received, as they
+     * were sent.
+     */
+    public long getBytesReceived() {
+        return this.bytesReceived.get();
+    }
+
+    /**
+     * @return how many bytes of response bodies have been sent, as they
+     * were sent.
+     */
+    public long getBytesSent() {
+        return this.bytesSent.get();
+    }
+
+    /**
+     * Gets the files on a repository's default branch.
+     *
+     * @param fullName the repository, as owner/name.
+     * @return the contents of each file by path, or null if the repository
+     * does not exist. Empty if nothing has been committed.
+     */
+    public synchronized Map<String, byte[]> getFiles(String fullName) {
+        Repository repo = this.repositories.get(fullName);
+        if (repo == null) {
+            return null;
+        }
+        Map<String, byte[]> files = new TreeMap<>();
+        String head = repo.branches.get(repo.defaultBranch);
+        if (head != null) {
+            String tree = repo.commits.get(head).tree;
+            for (Map.Entry<String, String> entry
+                : repo.trees.get(tree).entrySet()) {
+                files.put(entry.getKey(), repo.blobs.get(entry.getValue()));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Handles a single request.
+     *
+     * @param exchange the request.
+     * @throws IOException if the response could not be sent.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            this.requests.incrementAndGet();
+            if (this.latencyMillis > 0) {
+                Thread.sleep(this.latencyMillis);
+            }
+            String verb = exchange.getRequestMethod().toUpperCase();
+            String override = exchange.getRequestHeaders()
+                .getFirst("X-HTTP-Method-Override");
+            if (override != null) {
+                verb = override.toUpperCase();
+            }
+            String path = exchange.getRequestURI().getPath();
+            Response response;
+            int fault = nextFault(verb, path);
+            if (fault == RESET) {
+                // Closing before any response is sent drops the connection.
+                return;
+            } else if (path.equals("/rate_limit")) {
+                response = rateLimit();
+            } else if (!checkRateLimit()) {
+                response = error(403, "API rate limit exceeded.");
+            } else if (fault > 0) {
+                response = error(fault, "Injected failure.");
+                if (fault == 429 || fault == 403) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                }
+            } else {
+                String user = authenticate(exchange);
+                boolean gzipped = "gzip".equalsIgnoreCase(exchange
+                    .getRequestHeaders().getFirst("Content-Encoding"));
+                if (user == null) {
+                    response = error(401, "Requires authentication");
+                } else if (gzipped && !this.compressedRequests) {
+                    response = error(415, "Unsupported Content-Encoding.");
+                } else {
+                    // The body is read before the model is locked, so
+                    // uploads do not hold up other requests.
+                    InputStream body = countIn(exchange.getRequestBody());
+                    Map<String, Object> request = verb.equals("GET")
+                        ? new LinkedHashMap<String, Object>()
+                        : readObject(gzipped ? new GZIPInputStream(body)
+                            : body);
+                    response = route(verb, path,
+                        query(exchange.getRequestURI().getRawQuery()), user,
+                        request);
+                    if (verb.equals("GET") && response.status == 200) {
+                        response = validate(exchange, response);
+                    }
+                }
+            }
+            send(exchange, response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            send(exchange, error(500, String.valueOf(e)));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Picks whether a request should fail.
+     *
+     * @param verb the verb of the request.
+     * @param path the path of the request.
+     * @return the status to fail with, RESET, or -1 not to fail.
+     */
+    private synchronized int nextFault(String verb, String path) {
+        for (Fault fault : this.scheduledFaults) {
+            if ((fault.verb == null || fault.verb.equalsIgnoreCase(verb))
+                && fault.path.matcher(path).matches()) {
+                this.scheduledFaults.remove(fault);
+                this.faults.incrementAndGet();
+                return fault.status;
+            }
+        }
+        if (this.randomStatuses.length > 0
+            && this.random.nextDouble() < this.faultProbability) {
+            this.faults.incrementAndGet();
+            return this.randomStatuses[
+                this.random.nextInt(this.randomStatuses.length)];
+        }
+        return -1;
+    }
+
+    /**
+     * Counts a request against the rate limit.
+     *
+     * @return whether the request is allowed.
+     */
+    private synchronized boolean checkRateLimit() {
+        long now = System.currentTimeMillis() / 1000;
+        if (now >= this.rateLimitReset) {
+            this.rateLimitRemaining = this.rateLimit;
+            this.rateLimitReset = now + this.rateLimitWindowSeconds;
+        }
+        if (this.rateLimitRemaining == 0) {
+            return false;
+        }
+        this.rateLimitRemaining--;
+        return true;
+    }
+
+    /**
+     * Reports the rate limit. Like GitHub, this needs no authentication and
+     * does not count against the limit itself.
+     *
+     * @return the response.
+     */
+    private synchronized Response rateLimit() {
+        long limit = this.rateLimit;
+        long remaining = this.rateLimitRemaining;
+        long reset = this.rateLimitReset;
+        return json(200, json -> json.beginObject()
+            .name("resources").beginObject()
+            .name("core").beginObject()
+            .name("limit").value(limit)
+            .name("remaining").value(remaining)
+            .name("reset").value(reset)
+            .endObject().endObject().endObject());
+    }
+
+    /**
+     * Tags a successful GET with an ETag, and answers 304 Not Modified
+     * instead if the client already has it. Like GitHub, a 304 does not
+     * count against the rate limit.
+     *
+     * @param exchange the request.
+     * @param response the response.
+     * @return the response to send.
+     */
+    private Response validate(HttpExchange exchange, Response response) {
+        String etag = "\"" + hash("response", response.body) + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (!etag.equals(exchange.getRequestHeaders().getFirst(
+            "If-None-Match"))) {
+            return response;
+        }
+        synchronized (this) {
+            this.rateLimitRemaining = Math.min(this.rateLimit,
+                this.rateLimitRemaining + 1);
+        }
+        return new Response(304, response.contentType, new byte[0]);
+    }
+
+    /**
+     * Sends a response, along with the rate limit headers.
+     *
+     * @param exchange the request.
+     * @param response the response.
+     * @throws IOException if the response could not be sent.
+     */
+    private void send(HttpExchange exchange, Response response)
+        throws IOException {
+        synchronized (this) {
+            exchange.getResponseHeaders().set("X-RateLimit-Limit",
+                String.valueOf(this.rateLimit));
+            exchange.getResponseHeaders().set("X-RateLimit-Remaining",
+                String.valueOf(this.rateLimitRemaining));
+            exchange.getResponseHeaders().set("X-RateLimit-Reset",
+                String.valueOf(this.rateLimitReset));
+        }
+        exchange.getResponseHeaders().set("Content-Type",
+            response.contentType);
+        byte[] body = response.body;
+        String accepted = exchange.getRequestHeaders().getFirst(
+            "Accept-Encoding");
+        if (body.length > 0 && accepted != null && accepted.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(body);
+            gzip.close();
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(response.status,
+            body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+            this.bytesSent.addAndGet(body.length);
+        }
+    }
+
+    /**
+     * Counts the bytes of a request body as they are read.
+     *
+     * @param in the request body.
+     * @return a stream that counts what goes through it.
+     */
+    private InputStream countIn(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = in.read();
+                if (b >= 0) {
+                    bytesReceived.incrementAndGet();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = in.read(b, off, len);
+                if (read > 0) {
+                    bytesReceived.addAndGet(read);
+                }
+                return read;
+            }
+        };
+    }
+
+    /**
+     * Reads the username out of a request's basic authentication. Any
+     * password is accepted.
+     *
+     * @param exchange the request.
+     * @return the username, or null if there is none.
+     */
+    private static String authenticate(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst(
+            "Authorization");
+        if (header == null || !header.startsWith("Basic ")) {
+            return null;
+        }
+        String credentials = new String(Base64.getDecoder().decode(
+            header.substring("Basic ".length()).trim()),
+            StandardCharsets.UTF_8);
+        int colon = credentials.indexOf(':');
+        String user = colon < 0 ? credentials : credentials.substring(0,
+            colon);
+        return user.isEmpty() ? null : user;
+    }
+
+    /**
+     * Finds the endpoint a request is for and handles it.
+     *
+     * @param verb the verb of the request.
+     * @param path the path of the request.
+     * @param query the query parameters of the request.
+     * @param user who sent the request.
+     * @param request the body of the request.
+     * @return the response.
+     * @throws IOException if a response could not be built.
+     */
+    private Response route(String verb, String path,
+        Map<String, String> query, String user, Map<String, Object> request)
+        throws IOException {
+        if (path.equals("/user") && verb.equals("GET")) {
+            return json(200, json -> json.beginObject()
+                .name("login").value(user).endObject());
+        }
+        if (path.equals("/user/repos")) {
+            if (verb.equals("POST")) {
+                return createRepository(user, request);
+            } else if (verb.equals("GET")) {
+                return listRepositories(user, query);
+            }
+            return error(404, "Not Found");
+        }
+        String[] parts = path.split("/", 5);
+        if (parts.length < 4 || !parts[1].equals("repos")) {
+            return error(404, "Not Found");
+        }
+        String fullName = parts[2] + "/" + parts[3];
+        String rest = parts.length > 4 ? parts[4] : "";
+        synchronized (this) {
+            Repository repo = this.repositories.get(fullName);
+            if (repo == null || !repo.canAccess(user)) {
+                return error(404, "Not Found");
+            }
+            if (rest.isEmpty() && verb.equals("GET")) {
+                return json(200, repo::writeTo);
+            } else if (rest.startsWith("collaborators/")
+                && verb.equals("PUT")) {
+                if (!repo.owner.equals(user)) {
+                    return error(403, "Must have admin rights to Repository.");
+                }
+                repo.collaborators.add(rest.substring(
+                    "collaborators/".length()));
+                return json(201, json -> json.beginObject().endObject());
+            } else if (rest.startsWith("contents/")) {
+                String filePath = rest.substring("contents/".length());
+                if (verb.equals("GET")) {
+                    return getContents(repo, filePath);
+                } else if (verb.equals("PUT")) {
+                    return putContents(repo, filePath, request);
+                }
+            } else if (rest.equals("zipball") || rest.startsWith("zipball/")) {
+                return zipball(repo);
+            } else if (rest.startsWith("git/")) {
+                return routeGit(repo, verb, rest.substring("git/".length()),
+                    request);
+            }
+        }
+        return error(404, "Not Found");
+    }
+
+    /**
+     * Handles the Git Data API.
+     *
+     * @param repo the repository.
+     * @param verb the verb of the request.
+     * @param path the path after git/.
+     * @param request the body of the request.
+     * @return the response.
+     */
+    private Response routeGit(Repository repo, String verb, String path,
+        Map<String, Object> request) {
+        if (path.equals("blobs") && verb.equals("POST")) {
+            String content = string(request.get("content"));
+            byte[] bytes = "base64".equals(request.get("encoding"))
+                ? Base64.getMimeDecoder().decode(content)
+                : content.getBytes(StandardCharsets.UTF_8);
+            String sha = repo.putBlob(bytes);
+            return json(201, json -> json.beginObject()
+                .name("sha").value(sha).endObject());
+        } else if (path.equals("trees") && verb.equals("POST")) {
+            return createTree(repo, request);
+        } else if (path.startsWith("trees/") && verb.equals("GET")) {
+            return getTree(repo, path.substring("trees/".length()));
+        } else if (path.equals("commits") && verb.equals("POST")) {
+            return createCommit(repo, request);
+        } else if (path.startsWith("commits/") && verb.equals("GET")) {
+            String sha = path.substring("commits/".length());
+            Commit commit = repo.commits.get(sha);
+            if (commit == null) {
+                return error(404, "Not Found");
+            }
+            return json(200, json -> commit.writeTo(json, sha));
+        } else if (path.startsWith("ref/heads/") && verb.equals("GET")) {
+            if (repo.branches.isEmpty()) {
+                return error(409, "Git Repository is empty.");
+            }
+            String branch = path.substring("ref/heads/".length());
+            String head = repo.branches.get(branch);
+            if (head == null) {
+                return error(404, "Not Found");
+            }
+            return json(200, json -> writeRef(json, branch, head));
+        } else if (path.startsWith("refs/heads/") && verb.equals("PATCH")) {
+            return updateRef(repo, path.substring("refs/heads/".length()),
+                request);
+        }
+        return error(404, "Not Found");
+    }
+
+    /**
+     * Handles POST /user/repos.
+     *
+     * @param user who sent the request.
+     * @param request the body of the request.
+     * @return the response.
+     */
+    private synchronized Response createRepository(String user,
+        Map<String, Object> request) {
+        String name = string(request.get("name"));
+        if (name == null || name.isEmpty()) {
+            return error(422, "Repository creation failed.");
+        }
+        String fullName = user + "/" + name;
+        if (this.repositories.containsKey(fullName)) {
+            return error(422, "Repository creation failed.");
+        }
+        Repository repo = new Repository(user, name,
+            "true".equals(request.get("private")));
+        this.repositories.put(fullName, repo);
+        return json(201, repo::writeTo);
+    }
+
+    /**
+     * Handles GET /user/repos.
+     *
+     * @param user who sent the request.
+     * @param query the query parameters, which may hold affiliation,
+     * per_page and page.
+     * @return the response.
+     */
+    private synchronized Response listRepositories(String user,
+        Map<String, String> query) {
+        String affiliation = query.containsKey("affiliation")
+            ? query.get("affiliation") : "owner,collaborator";
+        int perPage = query.containsKey("per_page")
+            ? Integer.parseInt(query.get("per_page")) : DEFAULT_PAGE_SIZE;
+        int page = query.containsKey("page")
+            ? Integer.parseInt(query.get("page")) : 1;
+        List<Repository> visible = new ArrayList<>();
+        for (Repository repo : new TreeMap<>(this.repositories).values()) {
+            if ((affiliation.contains("owner") && repo.owner.equals(user))
+                || (affiliation.contains("collaborator")
+                && repo.collaborators.contains(user))) {
+                visible.add(repo);
+            }
+        }
+        int from = Math.min(visible.size(), (page - 1) * perPage);
+        List<Repository> shown = visible.subList(from,
+            Math.min(visible.size(), from + perPage));
+        return json(200, json -> {
+            json.beginArray();
+            for (Repository repo : shown) {
+                repo.writeTo(json);
+            }
+            json.endArray();
+        });
+    }
+
+    /**
+     * Handles GET /repos/owner/name/contents/path.
+     *
+     * @param repo the repository.
+     * @param path the path of the file.
+     * @return the response.
+     */
+    private Response getContents(Repository repo, String path) {
+        String sha = repo.headFiles().get(path);
+        if (sha == null) {
+            return error(404, "Not Found");
+        }
+        byte[] bytes = repo.blobs.get(sha);
+        return json(200, json -> json.beginObject()
+            .name("type").value("file")
+            .name("path").value(path)
+            .name("sha").value(sha)
+            .name("size").value(bytes.length)
+            .name("encoding").value("base64")
+            .name("content").value(Base64.getEncoder().encodeToString(bytes))
+            .endObject());
+    }
+
+    /**
+     * Handles PUT /repos/owner/name/contents/path, which commits a single
+     * file to the default branch.
+     *
+     * @param repo the repository.
+     * @param path the path of the file.
+     * @param request the body of the request.
+     * @return the response.
+     */
+    private Response putContents(Repository repo, String path,
+        Map<String, Object> request) {
+        String content = string(request.get("content"));
+        if (content == null) {
+            return error(422, "Invalid request.\n\n\"content\" wasn't "
+                + "supplied.");
+        }
+        Map<String, String> files = repo.headFiles();
+        String existing = files.get(path);
+        String sha = string(request.get("sha"));
+        if (existing != null && sha == null) {
+            return error(422, "Invalid request.\n\n\"sha\" wasn't supplied.");
+        } else if (existing == null && sha != null) {
+            return error(422, "sha does not match any file.");
+        } else if (existing != null && !existing.equals(sha)) {
+            return error(409, path + " does not match " + sha);
+        }
+        String blob = repo.putBlob(Base64.getMimeDecoder().decode(content));
+        Map<String, String> tree = new TreeMap<>(files);
+        tree.put(path, blob);
+        String head = repo.branches.get(repo.defaultBranch);
+        List<String> parents = new ArrayList<>();
+        if (head != null) {
+            parents.add(head);
+        }
+        String commit = repo.putCommit(new Commit(repo.putTree(tree),
+            parents, string(request.get("message"))));
+        repo.branches.put(repo.defaultBranch, commit);
+        return json(existing == null ? 201 : 200, json -> json.beginObject()
+            .name("content").beginObject()
+            .name("path").value(path)
+            .name("sha").value(blob)
+            .endObject()
+            .name("commit").beginObject()
+            .name("sha").value(commit)
+            .endObject()
+            .endObject());
+    }
+
+    /**
+     * Handles POST /repos/owner/name/git/trees. Entries with a null sha
+     * delete the file from the base tree.
+     *
+     * @param repo the repository.
+     * @param request the body of the request.
+     * @return the response.
+     */
+    private Response createTree(Repository repo, Map<String, Object> request) {
+        if (repo.branches.isEmpty()) {
+            return error(409, "Git Repository is empty.");
+        }
+        Map<String, String> tree = new TreeMap<>();
+        String baseTree = string(request.get("base_tree"));
+        if (baseTree != null) {
+            if (!repo.trees.containsKey(baseTree)) {
+                return error(422, "base_tree is not a valid tree.");
+            }
+            tree.putAll(repo.trees.get(baseTree));
+        }
+        Object entries = request.get("tree");
+        if (!(entries instanceof List)) {
+            return error(422, "Invalid tree info");
+        }
+        for (Object item : (List<?>) entries) {
+            if (!(item instanceof Map)) {
+                return error(422, "Invalid tree info");
+            }
+            Map<?, ?> entry = (Map<?, ?>) item;
+            String path = string(entry.get("path"));
+            String content = string(entry.get("content"));
+            if (path == null) {
+                return error(422, "Invalid tree info");
+            } else if (content != null) {
+                tree.put(path, repo.putBlob(
+                    content.getBytes(StandardCharsets.UTF_8)));
+            } else if (entry.get("sha") == null) {
+                tree.remove(path);
+            } else if (repo.blobs.containsKey(string(entry.get("sha")))) {
+                tree.put(path, string(entry.get("sha")));
+            } else {
+                return error(422, "Invalid tree info");
+            }
+        }
+        String sha = repo.putTree(tree);
+        return json(201, json -> json.beginObject()
+            .name("sha").value(sha).endObject());
+    }
+
+    /**
+     * Handles GET /repos/owner/name/git/trees/ref, where ref is a branch, a
+     * commit, or a tree. Only files are listed, and always recursively.
+     *
+     * @param repo the repository.
+     * @param ref the branch, commit, or tree.
+     * @return the response.
+     */
+    private Response getTree(Repository repo, String ref) {
+        String sha = ref;
+        if (repo.branches.containsKey(sha)) {
+            sha = repo.branches.get(sha);
+        }
+        if (repo.commits.containsKey(sha)) {
+            sha = repo.commits.get(sha).tree;
+        }
+        Map<String, String> tree = repo.trees.get(sha);
+        if (tree == null) {
+            return error(repo.branches.isEmpty() ? 409 : 404, "Not Found");
+        }
+        String treeSha = sha;
+        return json(200, json -> {
+            json.beginObject()
+                .name("sha").value(treeSha)
+                .name("tree").beginArray();
+            for (Map.Entry<String, String> entry : tree.entrySet()) {
+                json.beginObject()
+                    .name("path").value(entry.getKey())
+                    .name("mode").value("100644")
+                    .name("type").value("blob")
+                    .name("sha").value(entry.getValue())
+                    .name("size").value(repo.blobs.get(entry.getValue())
+                        .length)
+                    .endObject();
+            }
+            json.endArray()
+                .name("truncated").value(false)
+                .endObject();
+        });
+    }
+
+    /**
+     * Handles POST /repos/owner/name/git/commits.
+     *
+     * @param repo the repository.
+     * @param request the body of the request.
+     * @return the response.
+     */
+    private Response createCommit(Repository repo,
+        Map<String, Object> request) {
+        String tree = string(request.get("tree"));
+        if (!repo.trees.containsKey(tree)) {
+            return error(422, "Tree SHA does not exist");
+        }
+        List<String> parents = new ArrayList<>();
+        if (request.get("parents") instanceof List) {
+            for (Object parent : (List<?>) request.get("parents")) {
+                if (!repo.commits.containsKey(string(parent))) {
+                    return error(422, "Parent SHA does not exist or is not "
+                        + "a commit object");
+                }
+                parents.add(string(parent));
+            }
+        }
+        Commit commit = new Commit(tree, parents,
+            string(request.get("message")));
+        String sha = repo.putCommit(commit);
+        return json(201, json -> commit.writeTo(json, sha));
+    }
+
+    /**
+     * Handles PATCH /repos/owner/name/git/refs/heads/branch. The branch only
+     * moves backwards or sideways if force is true.
+     *
+     * @param repo the repository.
+     * @param branch the branch.
+     * @param request the body of the request.
+     * @return the response.
+     */
+    private Response updateRef(Repository repo, String branch,
+        Map<String, Object> request) {
+        String head = repo.branches.get(branch);
+        String sha = string(request.get("sha"));
+        if (head == null) {
+            return error(422, "Reference does not exist");
+        } else if (!repo.commits.containsKey(sha)) {
+            return error(422, "Object does not exist");
+        } else if (!"true".equals(request.get("force"))
+            && !repo.descendsFrom(sha, head)) {
+            return error(422, "Update is not a fast forward");
+        }
+        repo.branches.put(branch, sha);
+        return json(200, json -> writeRef(json, branch, sha));
+    }
+
+    /**
+     * Handles GET /repos/owner/name/zipball, which zips up the default
+     * branch inside a single directory named after the commit.
+     *
+     * @param repo the repository.
+     * @return the response.
+     * @throws IOException if the zip could not be written.
+     */
+    private Response zipball(Repository repo) throws IOException {
+        String head = repo.branches.get(repo.defaultBranch);
+        if (head == null) {
+            return error(404, "Not Found");
+        }
+        String directory = repo.owner + "-" + repo.name + "-"
+            + head.substring(0, 7) + "/";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        zip.putNextEntry(new ZipEntry(directory));
+        zip.closeEntry();
+        for (Map.Entry<String, String> file : repo.headFiles().entrySet()) {
+            zip.putNextEntry(new ZipEntry(directory + file.getKey()));
+            zip.write(repo.blobs.get(file.getValue()));
+            zip.closeEntry();
+        }
+        zip.close();
+        return new Response(200, "application/zip", bytes.toByteArray());
+    }
+
+    /**
+     * Writes a ref the way the Git Data API does.
+     *
+     * @param json where to write the ref.
+     * @param branch the branch.
+     * @param sha the commit the branch points to.
+     * @throws IOException if the ref could not be written.
+     */
+    private static void writeRef(JsonWriter json, String branch, String sha)
+        throws IOException {
+        json.beginObject()
+            .name("ref").value("refs/heads/" + branch)
+            .name("object").beginObject()
+            .name("type").value("commit")
+            .name("sha").value(sha)
+            .endObject()
+            .endObject();
+    }
+
+    /**
+     * Reads a JSON object from a request body. Numbers, booleans and null
+     * are read as strings, or as null for null.
+     *
+     * @param body the body of the request.
+     * @return the object, or an empty object if the body is empty.
+     * @throws IOException if the body could not be read.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readObject(InputStream body)
+        throws IOException {
+        JsonReader json = new JsonReader(body);
+        if (json.peek() != JsonReader.Token.BEGIN_OBJECT) {
+            return new LinkedHashMap<>();
+        }
+        return (Map<String, Object>) readValue(json);
+    }
+
+    /**
+     * Reads any JSON value.
+     *
+     * @param json where to read the value from.
+     * @return a Map for an object, a List for an array, or a String.
+     * @throws IOException if the value could not be read.
+     */
+    private static Object readValue(JsonReader json) throws IOException {
+        switch (json.peek()) {
+            case BEGIN_OBJECT:
+                Map<String, Object> object = new LinkedHashMap<>();
+                json.beginObject();
+                while (json.hasNext()) {
+                    object.put(json.nextName(), readValue(json));
+                }
+                json.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                List<Object> array = new ArrayList<>();
+                json.beginArray();
+                while (json.hasNext()) {
+                    array.add(readValue(json));
+                }
+                json.endArray();
+                return array;
+            default:
+                return json.nextString();
+        }
+    }
+
+    /**
+     * Splits a query string into its parameters.
+     *
+     * @param query the raw query string, which may be null.
+     * @return the parameters.
+     */
+    private static Map<String, String> query(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                parameters.put(parameter.substring(0, equals),
+                    parameter.substring(equals + 1));
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * @param value a value read from a request.
+     * @return the value if it is a string, otherwise null.
+     */
+    private static String string(Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * Builds a JSON response.
+     *
+     * @param status the status of the response.
+     * @param content writes the body of the response.
+     * @return the response.
+     */
+    private static Response json(int status, JsonWriter.Content content) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            JsonWriter json = new JsonWriter(bytes);
+            content.writeTo(json);
+            json.flush();
+        } catch (IOException e) {
+            // Nothing here does I/O that can fail.
+            throw new IllegalStateException(e);
+        }
+        return new Response(status, "application/json; charset=utf-8",
+            bytes.toByteArray());
+    }
+
+    /**
+     * Builds an error response the way GitHub words them.
+     *
+     * @param status the status of the response.
+     * @param message what went wrong.
+     * @return the response.
+     */
+    private static Response error(int status, String message) {
+        return json(status, json -> json.beginObject()
+            .name("message").value(message)
+            .endObject());
+    }
+
+    /**
+     * Hashes a git object.
+     *
+     * @param type the type of the object.
+     * @param bytes the contents of the object.
+     * @return the SHA-1 of the object in hex.
+     */
+    private static String hash(String type, byte[] bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update((type + " " + bytes.length + "\0").getBytes(
+                StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(bytes)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available.", e);
+        }
+    }
+
+    /**
+     * A response to send.
+     */
+    private static class Response {
+        private int status;
+        private String contentType;
+        private byte[] body;
+
+        /**
+         * @param status the status of the response.
+         * @param contentType the type of the body.
+         * @param body the body.
+         */
+        Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /**
+     * A failure scheduled with failNext.
+     */
+    private static class Fault {
+        private String verb;
+        private Pattern path;
+        private int status;
+
+        /**
+         * @param verb the verb to fail, or null for any.
+         * @param path the paths to fail.
+         * @param status the status to fail with.
+         */
+        Fault(String verb, Pattern path, int status) {
+            this.verb = verb;
+            this.path = path;
+            this.status = status;
+        }
+    }
+
+    /**
+     * A commit. Commits are hashed from their tree, parents and message, so
+     * unlike git they have no dates.
+     */
+    private static class Commit {
+        private String tree;
+        private List<String> parents;
+        private String message;
+
+        /**
+         * @param tree the tree of the commit.
+         * @param parents the parents of the commit.
+         * @param message the commit message.
+         */
+        Commit(String tree, List<String> parents, String message) {
+            this.tree = tree;
+            this.parents = parents;
+            this.message = message == null ? "" : message;
+        }
+
+        /**
+         * @return the SHA of the commit.
+         */
+        String hash() {
+            StringBuilder text = new StringBuilder("tree " + this.tree + "\n");
+            for (String parent : this.parents) {
+                text.append("parent ").append(parent).append('\n');
+            }
+            text.append('\n').append(this.message);
+            return FakeGitHubServer.hash("commit",
+                text.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Writes the commit the way the Git Data API does.
+         *
+         * @param json where to write the commit.
+         * @param sha the SHA of the commit.
+         * @throws IOException if the commit could not be written.
+         */
+        void writeTo(JsonWriter json, String sha) throws IOException {
+            json.beginObject()
+                .name("sha").value(sha)
+                .name("message").value(this.message)
+                .name("tree").beginObject()
+                .name("sha").value(this.tree)
+                .endObject()
+                .name("parents").beginArray();
+            for (String parent : this.parents) {
+                json.beginObject().name("sha").value(parent).endObject();
+            }
+            json.endArray().endObject();
+        }
+    }
+
+    /**
+     * A repository. Trees are kept flat, as a map from each file's full path
+     * to the SHA of its blob.
+     */
+    private static class Repository {
+        private String owner;
+        private String name;
+        private boolean isPrivate;
+        private String defaultBranch;
+        private Set<String> collaborators;
+        private Map<String, String> branches;
+        private Map<String, byte[]> blobs;
+        private Map<String, Map<String, String>> trees;
+        private Map<String, Commit> commits;
+
+        /**
+         * @param owner who owns the repository.
+         * @param name the name of the repository.
+         * @param isPrivate whether the repository is private.
+         */
+        Repository(String owner, String name, boolean isPrivate) {
+            this.owner = owner;
+            this.name = name;
+            this.isPrivate = isPrivate;
+            this.defaultBranch = DEFAULT_BRANCH;
+            this.collaborators = new HashSet<>();
+            this.branches = new HashMap<>();
+            this.blobs = new HashMap<>();
+            this.trees = new HashMap<>();
+            this.commits = new HashMap<>();
+        }
+
+        /**
+         * @param user someone sending a request.
+         * @return whether they can see the repository.
+         */
+        boolean canAccess(String user) {
+            return this.owner.equals(user) || this.collaborators.contains(user)
+                || !this.isPrivate;
+        }
+
+        /**
+         * @return the files on the default branch, by path.
+         */
+        Map<String, String> headFiles() {
+            String head = this.branches.get(this.defaultBranch);
+            if (head == null) {
+                return new TreeMap<>();
+            }
+            return this.trees.get(this.commits.get(head).tree);
+        }
+
+        /**
+         * @param bytes the contents of a blob.
+         * @return the SHA of the blob.
+         */
+        String putBlob(byte[] bytes) {
+            String sha = hash("blob", bytes);
+            this.blobs.put(sha, bytes);
+            return sha;
+        }
+
+        /**
+         * @param tree the files in a tree, by path.
+         * @return the SHA of the tree.
+         */
+        String putTree(Map<String, String> tree) {
+            StringBuilder text = new StringBuilder();
+            for (Map.Entry<String, String> entry : tree.entrySet()) {
+                text.append(entry.getKey()).append('\0')
+                    .append(entry.getValue()).append('\n');
+            }
+            String sha = hash("tree",
+                text.toString().getBytes(StandardCharsets.UTF_8));
+            this.trees.put(sha, tree);
+            return sha;
+        }
+
+        /**
+         * @param commit a commit.
+         * @return the SHA of the commit.
+         */
+        String putCommit(Commit commit) {
+            String sha = commit.hash();
+            this.commits.put(sha, commit);
+            return sha;
+        }
+
+        /**
+         * @param sha a commit.
+         * @param ancestor another commit.
+         * @return whether ancestor is sha or one of its ancestors.
+         */
+        boolean descendsFrom(String sha, String ancestor) {
+            LinkedList<String> queue = new LinkedList<>();
+            Set<String> seen = new HashSet<>();
+            queue.add(sha);
+            while (!queue.isEmpty()) {
+                String commit = queue.remove();
+                if (commit.equals(ancestor)) {
+                    return true;
+                }
+                if (seen.add(commit) && this.commits.containsKey(commit)) {
+                    queue.addAll(this.commits.get(commit).parents);
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Writes the repository the way the repositories API does.
+         *
+         * @param json where to write the repository.
+         * @throws IOException if the repository could not be written.
+         */
+        void writeTo(JsonWriter json) throws IOException {
+            json.beginObject()
+                .name("name").value(this.name)
+                .name("full_name").value(this.owner + "/" + this.name)
+                .name("owner").beginObject()
+                .name("login").value(this.owner)
+                .endObject()
+                .name("private").value(this.isPrivate)
+                .name("default_branch").value(this.defaultBranch)
+                .endObject();
+        }
+    }
+}
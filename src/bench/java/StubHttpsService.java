@@ -0,0 +1,113 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An HttpsService that never touches the network. Request bodies are written
+ * out in full and thrown away, each request waits a fixed latency, and every
+ * response is a canned JSON object with the fields GitHubSubmitter reads.
+ * Tree listings come back empty, so every file is planned as new.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class StubHttpsService implements HttpsService {
+    private static final byte[] RESPONSE = ("{\"sha\":"
+        + "\"95d09f2b10159347eece71399a7e2e907ea3df4f\","
+        + "\"default_branch\":\"main\","
+        + "\"object\":{\"sha\":\"95d09f2b10159347eece71399a7e2e907ea3df4f\"},"
+        + "\"tree\":{\"sha\":\"95d09f2b10159347eece71399a7e2e907ea3df4f\"}}")
+        .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TREE = ("{\"sha\":"
+        + "\"95d09f2b10159347eece71399a7e2e907ea3df4f\","
+        + "\"tree\":[],\"truncated\":false}")
+        .getBytes(StandardCharsets.UTF_8);
+    private long latencyMillis;
+    private AtomicLong requests;
+    private AtomicLong bytesSent;
+
+    /**
+     * Public constructor.
+     *
+     * @param latencyMillis how long each request takes.
+     */
+    public StubHttpsService(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        this.requests = new AtomicLong();
+        this.bytesSent = new AtomicLong();
+    }
+
+    @Override
+    public String get(String url) throws IOException {
+        return send("GET", url, null, ResponseHandler.string());
+    }
+
+    @Override
+    public String post(String url, String[][] properties) throws IOException {
+        return send("POST", url, RequestBody.of("{}"),
+            ResponseHandler.string());
+    }
+
+    @Override
+    public String put(String url, String[][] properties) throws IOException {
+        return send("PUT", url, RequestBody.of("{}"),
+            ResponseHandler.string());
+    }
+
+    @Override
+    public <T> T send(String verb, String url, RequestBody body,
+        ResponseHandler<T> handler) throws IOException {
+        this.requests.incrementAndGet();
+        if (body != null) {
+            CountingStream out = new CountingStream();
+            body.writeTo(out);
+            this.bytesSent.addAndGet(out.count);
+        }
+        if (this.latencyMillis > 0) {
+            try {
+                Thread.sleep(this.latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted.", e);
+            }
+        }
+        // Listing a tree is the one read whose tree is an array, not an
+        // object.
+        boolean listing = verb.equals("GET") && url.contains("/git/trees/");
+        return handler.handle(new ByteArrayInputStream(listing ? TREE
+            : RESPONSE));
+    }
+
+    /**
+     * @return how many requests have been sent.
+     */
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    /**
+     * @return how many bytes of request bodies have been sent.
+     */
+    public long getBytesSent() {
+        return this.bytesSent.get();
+    }
+
+    /**
+     * Counts bytes and throws them away.
+     */
+    private static class CountingStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            this.count += len;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks for the hot paths of a submission: scanning the file tree,
+ * reading and encoding files, writing request bodies, and the whole addFiles
+ * flow against a stub server with a fixed latency. Whole submissions are
+ * also run over HTTP against a FakeGitHubServer, including one that has to
+ * survive injected failures.
+ *
+ * Run with gradle bench. Arguments, all optional: the latency of the stub
+ * server in milliseconds (default 20), then the names of the benchmarks to
+ * run (default all of them). A benchmark runs if its name starts with any of
+ * the names given.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class SubmissionBenchmarks {
+    private static final int TREE_DIRECTORIES = 100;
+    private static final int FILES_PER_DIRECTORY = 40;
+    private static final int IGNORED_FILES = 2000;
+    private static final int SUBMITTED_FILES = 40;
+    private static final int LARGE_FILE_SIZE = 16 * 1024 * 1024;
+    private static final int LARGE_TEXT_SIZE = 4 * 1024 * 1024;
+    private static final OutputStream NOWHERE = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private Path root;
+    private long latencyMillis;
+    private List<String> filters;
+    private BenchmarkRunner runner;
+
+    /**
+     * Public constructor.
+     *
+     * @param root the directory to build the benchmark files in.
+     * @param latencyMillis the latency of the stub server.
+     * @param filters prefixes of the names of the benchmarks to run, or empty
+     * to run all of them.
+     */
+    public SubmissionBenchmarks(Path root, long latencyMillis,
+        List<String> filters) {
+        this.root = root;
+        this.latencyMillis = latencyMillis;
+        this.filters = filters;
+        this.runner = new BenchmarkRunner(5, 20);
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args the latency in milliseconds, then benchmark names.
+     * @throws Exception if a benchmark fails.
+     */
+    public static void main(String[] args) throws Exception {
+        long latency = args.length > 0 ? Long.parseLong(args[0]) : 20;
+        List<String> filters = args.length > 1
+            ? Arrays.asList(args).subList(1, args.length)
+            : new ArrayList<String>();
+        Path root = Files.createTempDirectory("submission-bench");
+        try {
+            new SubmissionBenchmarks(root, latency, filters).runAll();
+        } finally {
+            delete(root);
+        }
+    }
+
+    /**
+     * Builds the benchmark files and runs every selected benchmark.
+     *
+     * @throws Exception if a benchmark fails.
+     */
+    public void runAll() throws Exception {
+        Random random = new Random(1331);
+        Path tree = this.root.resolve("tree");
+        for (int d = 0; d < TREE_DIRECTORIES; d++) {
+            Path dir = tree.resolve("src/package" + (d % 10) + "/module" + d);
+            Files.createDirectories(dir);
+            for (int f = 0; f < FILES_PER_DIRECTORY; f++) {
+                write(dir.resolve("File" + f + ".java"), text(random, 2048));
+            }
+            write(dir.resolve("File0.class"), text(random, 512));
+        }
+        Path ignored = tree.resolve("node_modules/dependency");
+        Files.createDirectories(ignored);
+        for (int f = 0; f < IGNORED_FILES; f++) {
+            write(ignored.resolve("index" + f + ".js"), text(random, 256));
+        }
+
+        byte[] binary = new byte[LARGE_FILE_SIZE];
+        random.nextBytes(binary);
+        Path large = this.root.resolve("dataset.bin");
+        Files.write(large, binary);
+        Path largeText = this.root.resolve("dataset.csv");
+        write(largeText, text(random, LARGE_TEXT_SIZE));
+
+        String[] submitted = new String[SUBMITTED_FILES];
+        for (int f = 0; f < SUBMITTED_FILES; f++) {
+            Path file = this.root.resolve("submission/Homework" + f + ".java");
+            Files.createDirectories(file.getParent());
+            write(file, text(random, 4096));
+            submitted[f] = file.toString();
+        }
+
+        System.out.println("Stub server latency: " + this.latencyMillis
+            + " ms");
+        benchmarkScanning(tree);
+        benchmarkEncoding(new FileContent(large.toString()));
+        benchmarkJson(new String(Files.readAllBytes(largeText),
+            StandardCharsets.UTF_8), new FileContent(large.toString()));
+        benchmarkAddFiles(submitted);
+        benchmarkEndToEnd(submitted);
+    }
+
+    /**
+     * Benchmarks walking a large tree with ignored directories in it, which
+     * is what processFileNames does.
+     *
+     * @param tree the root of the tree.
+     * @throws Exception if the benchmark fails.
+     */
+    private void benchmarkScanning(Path tree) throws Exception {
+        if (selected("scan.tree")) {
+            this.runner.run("scan.tree", 0,
+                () -> FileScanner.withIgnoreFile(tree).scan("."));
+        }
+        if (selected("scan.glob")) {
+            this.runner.run("scan.glob", 0,
+                () -> FileScanner.withIgnoreFile(tree).scan("src/**/*.java"));
+        }
+    }
+
+    /**
+     * Benchmarks reading a large file and encoding it in base 64, which is
+     * what addFiles does for every file, and hashing it for the manifest.
+     *
+     * @param content the file.
+     * @throws Exception if the benchmark fails.
+     */
+    private void benchmarkEncoding(FileContent content) throws Exception {
+        if (selected("file.base64")) {
+            this.runner.run("file.base64", content.getSize(), () -> {
+                content.writeBase64(NOWHERE);
+                return content;
+            });
+        }
+        if (selected("file.blobSha")) {
+            this.runner.run("file.blobSha", content.getSize(),
+                () -> new FileContent(content.getFileName()).getBlobSha());
+        }
+    }
+
+    /**
+     * Benchmarks writing large request bodies, both the way the String[][]
+     * property API does and with a file streamed into the body.
+     *
+     * @param largeValue a large string property.
+     * @param content a large file.
+     * @throws Exception if the benchmark fails.
+     */
+    private void benchmarkJson(String largeValue, FileContent content)
+        throws Exception {
+        String[][] properties = {
+            {"path", "dataset.csv"},
+            {"message", "Initial add"},
+            {"content", largeValue}
+        };
+        if (selected("json.properties")) {
+            this.runner.run("json.properties", largeValue.length(), () -> {
+                RequestBody body = RequestBody.json(json -> {
+                    json.beginObject();
+                    for (String[] property : properties) {
+                        json.name(property[0]).value(property[1]);
+                    }
+                    json.endObject();
+                });
+                body.writeTo(NOWHERE);
+                return body.getLength();
+            });
+        }
+        if (selected("json.base64File")) {
+            this.runner.run("json.base64File", content.getBase64Length(),
+                () -> {
+                    RequestBody body = RequestBody.json(json -> json
+                        .beginObject()
+                        .name("path").value(content.getFileName())
+                        .name("content").base64Value(content)
+                        .endObject());
+                    body.writeTo(NOWHERE);
+                    return body.getLength();
+                });
+        }
+    }
+
+    /**
+     * Benchmarks the whole addFiles flow against a stub server.
+     *
+     * @param fileNames the files to submit.
+     * @throws Exception if the benchmark fails.
+     */
+    private void benchmarkAddFiles(String[] fileNames) throws Exception {
+        int[][] modes = {{0, 1}, {0, 8}, {1, 1}, {1, 8}};
+        for (int[] mode : modes) {
+            boolean singleCommit = mode[0] == 1;
+            int concurrency = mode[1];
+            String name = "addFiles." + (singleCommit ? "commit" : "contents")
+                + ".x" + concurrency;
+            if (!selected(name)) {
+                continue;
+            }
+            StubHttpsService stub = new StubHttpsService(this.latencyMillis);
+            GitHubSubmitter submitter = new GitHubSubmitter(stub,
+                "hw-bench-student", "headTA", "student", fileNames);
+            submitter.setSingleCommit(singleCommit);
+            submitter.setConcurrency(concurrency);
+            this.runner.run(name, 0, submitter::addFiles);
+        }
+    }
+
+    /**
+     * Benchmarks whole submissions over HTTP against a FakeGitHubServer, and
+     * then checks that a submission still arrives intact when the server
+     * keeps failing.
+     *
+     * @param fileNames the files to submit.
+     * @throws Exception if the benchmark fails.
+     */
+    private void benchmarkEndToEnd(String[] fileNames) throws Exception {
+        FakeGitHubServer server = new FakeGitHubServer(0);
+        server.setLatency(this.latencyMillis);
+        server.start();
+        try {
+            for (int singleCommit = 0; singleCommit < 2; singleCommit++) {
+                String name = "endToEnd." + (singleCommit == 1 ? "commit"
+                    : "contents");
+                if (!selected(name)) {
+                    continue;
+                }
+                GitHubSubmitter submitter = newSubmitter(server,
+                    "hw-" + name, fileNames);
+                submitter.setSingleCommit(singleCommit == 1);
+                submitter.createRepository();
+                this.runner.run(name, 0, submitter::addFiles);
+            }
+            if (selected("endToEnd.faults")) {
+                checkFaults(server, fileNames);
+            }
+            if (selected("endToEnd.gzip")) {
+                compareCompression(server, fileNames);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Submits files while the server fails a tenth of all requests at
+     * random, as well as a conflict on moving the branch and a rate limited
+     * blob upload, and checks that every file arrived intact.
+     *
+     * @param server the server to submit to.
+     * @param fileNames the files to submit.
+     * @throws Exception if the files did not arrive intact.
+     */
+    private void checkFaults(FakeGitHubServer server, String[] fileNames)
+        throws Exception {
+        GitHubSubmitter submitter = newSubmitter(server, "hw-faults",
+            fileNames);
+        submitter.setSingleCommit(true);
+        submitter.createRepository();
+        long requests = server.getRequestCount();
+        long faults = server.getFaultCount();
+        server.failNext("PATCH", ".*/git/refs/heads/.*", 409, 1);
+        server.failNext("POST", ".*/git/trees", 429, 1);
+        server.failRandomly(0.1, 1331, 500, 502, 503,
+            FakeGitHubServer.RESET);
+        long start = System.nanoTime();
+        try {
+            submitter.addFiles();
+        } finally {
+            server.failRandomly(0, 0);
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        Map<String, byte[]> submitted = server.getFiles("student/hw-faults");
+        List<String> expected = FileScanner.withIgnoreFile(Paths.get(""))
+            .scan(fileNames);
+        for (String fileName : expected) {
+            if (!Arrays.equals(Files.readAllBytes(Paths.get(fileName)),
+                submitted.get(fileName))) {
+                throw new IllegalStateException(fileName
+                    + " did not arrive intact.");
+            }
+        }
+        System.out.printf("%-32s %d files intact after %d requests, %d "
+            + "failed on purpose, in %d ms%n", "endToEnd.faults",
+            expected.size(), server.getRequestCount() - requests,
+            server.getFaultCount() - faults, elapsed);
+    }
+
+    /**
+     * Submits the same files with request bodies sent as they are and then
+     * gzipped, and compares how many bytes went over the wire each way.
+     *
+     * @param server the server to submit to.
+     * @param fileNames the files to submit.
+     * @throws Exception if a submission fails.
+     */
+    private void compareCompression(FakeGitHubServer server,
+        String[] fileNames) throws Exception {
+        server.setAcceptCompressedRequests(true);
+        try {
+            for (boolean compressed : new boolean[] {false, true}) {
+                String name = "endToEnd.gzip." + (compressed ? "on" : "off");
+                PersistentHttpsService https = new PersistentHttpsService(
+                    server.getURL(), "student", "password", 8);
+                https.setCompressRequests(compressed);
+                GitHubSubmitter submitter = new GitHubSubmitter(https,
+                    "hw-" + name, "headTA", "student", fileNames);
+                submitter.setConcurrency(8);
+                submitter.setSingleCommit(true);
+                submitter.createRepository();
+                long received = server.getBytesReceived();
+                long sent = server.getBytesSent();
+                long start = System.nanoTime();
+                submitter.addFiles();
+                System.out.printf("%-32s %d bytes up, %d bytes down, in %d "
+                    + "ms%n", name, server.getBytesReceived() - received,
+                    server.getBytesSent() - sent,
+                    (System.nanoTime() - start) / 1000000);
+            }
+        } finally {
+            server.setAcceptCompressedRequests(false);
+        }
+    }
+
+    /**
+     * Creates a submitter that talks to a FakeGitHubServer.
+     *
+     * @param server the server.
+     * @param repositoryName the repository to submit to.
+     * @param fileNames the files to submit.
+     * @return the submitter.
+     */
+    private static GitHubSubmitter newSubmitter(FakeGitHubServer server,
+        String repositoryName, String[] fileNames) {
+        HttpsService https = new PersistentHttpsService(server.getURL(),
+            "student", "password", 8);
+        GitHubSubmitter submitter = new GitHubSubmitter(https,
+            repositoryName, "headTA", "student", fileNames);
+        submitter.setConcurrency(8);
+        return submitter;
+    }
+
+    /**
+     * @param name the name of a benchmark.
+     * @return whether the benchmark should be run.
+     */
+    private boolean selected(String name) {
+        if (this.filters.isEmpty()) {
+            return true;
+        }
+        for (String filter : this.filters) {
+            if (name.startsWith(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates text that looks roughly like source code.
+     *
+     * @param random where to get randomness from.
+     * @param length how many characters to generate.
+     * @return the text.
+     */
+    private static String text(Random random, int length) {
+        String alphabet = "abcdefghijklmnopqrstuvwxyz    (){};\"\n\t=+";
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes text to a file as UTF-8.
+     *
+     * @param file the file.
+     * @param text the text.
+     * @throws IOException if the file could not be written.
+     */
+    private static void write(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Deletes a directory and everything in it.
+     *
+     * @param path the directory.
+     * @throws IOException if it could not be deleted.
+     */
+    private static void delete(Path path) throws IOException {
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file,
+                BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir,
+                IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the requests of a blocking HttpsService without waiting for them, on
+ * a fixed number of threads. Requests beyond that many wait in a queue
+ * rather than each taking a thread of its own, so any number of them can be
+ * started at once.
+ *
+ * Cancelling a request that has not started yet keeps it from ever being
+ * sent. Cancelling one that has started, or letting it run past its timeout,
+ * interrupts the thread sending it, which stops the request before its next
+ * attempt. Only the connect and read timeouts of the service can cut off an
+ * attempt that is already waiting on the server.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class AsyncHttpsAdapter implements AsyncHttpsService {
+    private HttpsService https;
+    private ExecutorService pool;
+    private ScheduledExecutorService timer;
+    private volatile long timeoutMillis;
+
+    /**
+     * Public constructor.
+     *
+     * @param https the service to send requests through.
+     * @param threads the most requests that may be in flight at once.
+     * @throws IllegalArgumentException if threads is less than 1.
+     */
+    public AsyncHttpsAdapter(HttpsService https, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1, "
+                + "but was " + threads + ".");
+        }
+        this.https = https;
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "https-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "https-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets how long a request may take, from when it leaves the queue to when
+     * its response has been read, retries included. A request that takes
+     * longer fails with an InterruptedIOException. Time spent queued does not
+     * count, so a request is not timed out for waiting behind others.
+     *
+     * @param timeout how long a request may take, or 0 for no limit.
+     * @param unit the unit of timeout.
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(timeout);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> sendAsync(String verb, String url,
+        RequestBody body, ResponseHandler<T> handler) {
+        CompletableFuture<T> response = new CompletableFuture<>();
+        Future<?> task = this.pool.submit(() -> {
+            if (response.isDone()) {
+                return;
+            }
+            startTimeout(response, verb, url);
+            try {
+                response.complete(this.https.send(verb, url, body, handler));
+            } catch (IOException | RuntimeException | Error e) {
+                response.completeExceptionally(e);
+            }
+        });
+        // Whatever completed the response first, the request no longer needs
+        // to be sent. This does nothing if the request already finished.
+        response.whenComplete((result, failure) -> {
+            if (failure != null) {
+                task.cancel(true);
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Fails a request that is being sent once it has taken longer than the
+     * timeout, the way CompletableFuture.orTimeout does from Java 9 on.
+     *
+     * @param response the response to the request.
+     * @param verb the kind of request.
+     * @param url the url of the request, relative to the server.
+     */
+    private void startTimeout(CompletableFuture<?> response, String verb,
+        String url) {
+        long millis = this.timeoutMillis;
+        if (millis <= 0) {
+            return;
+        }
+        Future<?> timeout = this.timer.schedule(() -> {
+            response.completeExceptionally(new InterruptedIOException(verb
+                + " " + url + " took longer than " + millis + " ms."));
+        }, millis, TimeUnit.MILLISECONDS);
+        response.whenComplete((result, failure) -> timeout.cancel(false));
+    }
+
+    /**
+     * Cancels every request that has not finished, and stops the threads
+     * they are sent on.
+     */
+    public void shutdown() {
+        this.pool.shutdownNow();
+        this.timer.shutdownNow();
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Represents some service for processing HTTPS requests without waiting for
+ * them. Every request returns straight away with a future that completes
+ * once the response has been read. Cancelling the future abandons the
+ * request.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public interface AsyncHttpsService {
+
+    /**
+     * Sends an HTTPS GET request.
+     *
+     * @param url The url to send the request to.
+     * @return a future holding the response from the server.
+     */
+    default CompletableFuture<String> getAsync(String url) {
+        return sendAsync("GET", url, null, ResponseHandler.string());
+    }
+
+    /**
+     * Sends an HTTPS POST request.
+     *
+     * @param url The url to send the request to.
+     * @param properties an array of length 2 String arrays that represents the
+     * properties for the post request. Each length 2 String[] is in the format
+     * {property, value}.
+     * @return a future holding the response from the server.
+     * @throws IllegalArgumentException when properties is malformed.
+     */
+    default CompletableFuture<String> postAsync(String url,
+        String[][] properties) {
+        return sendAsync("POST", url, RequestBody.properties(properties),
+            ResponseHandler.string());
+    }
+
+    /**
+     * Sends an HTTPS PUT request.
+     *
+     * @param url The url to send the request to.
+     * @param properties an array of length 2 String arrays that represents the
+     * properties for the put request. Each length 2 String[] is in the format
+     * {property, value}.
+     * @return a future holding the response from the server.
+     * @throws IllegalArgumentException when properties is malformed.
+     */
+    default CompletableFuture<String> putAsync(String url,
+        String[][] properties) {
+        return sendAsync("PUT", url, RequestBody.properties(properties),
+            ResponseHandler.string());
+    }
+
+    /**
+     * Sends an HTTPS request, handing the response to handler as it arrives.
+     *
+     * @param verb the kind of request (e.g GET, POST, PUT, PATCH, etc.).
+     * @param url The url to send the request to.
+     * @param body the body of the request, or null for no body.
+     * @param handler reads the response.
+     * @param <T> what the response is read into.
+     * @return a future holding whatever handler read the response into, or
+     * the IOException the request failed with.
+     */
+    <T> CompletableFuture<T> sendAsync(String verb, String url,
+        RequestBody body, ResponseHandler<T> handler);
+
+    /**
+     * Waits for every request to finish, so this can be used wherever an
+     * HttpsService is expected.
+     *
+     * @return a service that sends each request through this one and waits
+     * for it.
+     */
+    default HttpsService blocking() {
+        return new HttpsService() {
+            @Override
+            public String get(String url) throws IOException {
+                return await(getAsync(url));
+            }
+
+            @Override
+            public String post(String url, String[][] properties)
+                throws IOException {
+                return await(postAsync(url, properties));
+            }
+
+            @Override
+            public String put(String url, String[][] properties)
+                throws IOException {
+                return await(putAsync(url, properties));
+            }
+
+            @Override
+            public <T> T send(String verb, String url, RequestBody body,
+                ResponseHandler<T> handler) throws IOException {
+                return await(sendAsync(verb, url, body, handler));
+            }
+        };
+    }
+
+    /**
+     * Waits for a request to finish. The request is cancelled if the
+     * waiting thread is interrupted.
+     *
+     * @param future the request.
+     * @param <T> what the response was read into.
+     * @return whatever the response was read into.
+     * @throws IOException if the request failed, was cancelled, or the wait
+     * was interrupted.
+     */
+    static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for "
+                + "a response.");
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("The request was cancelled.");
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Finds the IOException a request failed with.
+     *
+     * @param failure what a future completed exceptionally with.
+     * @return the IOException behind failure.
+     * @throws RuntimeException if failure was not caused by an IOException.
+     */
+    static IOException unwrap(Throwable failure) {
+        if (failure instanceof CompletionException
+            && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        if (failure instanceof UncheckedIOException) {
+            failure = failure.getCause();
+        }
+        if (failure instanceof IOException) {
+            return (IOException) failure;
+        } else if (failure instanceof CancellationException) {
+            return new InterruptedIOException("The request was cancelled.");
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IllegalStateException(failure);
+    }
+}
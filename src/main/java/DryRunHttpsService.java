@@ -0,0 +1,279 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Works out what a submission would send, without changing anything on the
+ * server. Reads are sent to the real service, so the submission is planned
+ * against what is really in the repository, but every request is only
+ * recorded, along with the size of its body, and writes are answered as if
+ * they had succeeded.
+ *
+ * Creating a repository that already exists is refused the way GitHub
+ * refuses it, so the submission takes the same path it would for real. Once
+ * a repository has been written to, reads of it that fail because the
+ * repository does not exist yet, or is still empty, are answered the way
+ * they would be after the writes, so the rest of the submission can be
+ * planned too.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class DryRunHttpsService implements HttpsService {
+    private static final String PLACEHOLDER_SHA =
+        "0000000000000000000000000000000000000000";
+    private static final String WRITTEN = "{\"sha\":\"" + PLACEHOLDER_SHA
+        + "\",\"content\":{\"sha\":\"" + PLACEHOLDER_SHA + "\"},"
+        + "\"object\":{\"sha\":\"" + PLACEHOLDER_SHA + "\"}}";
+    private HttpsService https;
+    private String username;
+    private List<Request> requests;
+    private Set<String> created;
+    private Set<String> populated;
+    private long readNanos;
+    private int reads;
+
+    /**
+     * Public constructor.
+     *
+     * @param https the service to send reads through.
+     * @param username the user new repositories would be created for.
+     */
+    public DryRunHttpsService(HttpsService https, String username) {
+        this.https = https;
+        this.username = username;
+        this.requests = new ArrayList<>();
+        this.created = new HashSet<>();
+        this.populated = new HashSet<>();
+    }
+
+    @Override
+    public String get(String url) throws IOException {
+        return send("GET", url, null, ResponseHandler.string());
+    }
+
+    @Override
+    public String post(String url, String[][] properties) throws IOException {
+        return send("POST", url, RequestBody.properties(properties),
+            ResponseHandler.string());
+    }
+
+    @Override
+    public String put(String url, String[][] properties) throws IOException {
+        return send("PUT", url, RequestBody.properties(properties),
+            ResponseHandler.string());
+    }
+
+    @Override
+    public <T> T send(String verb, String url, RequestBody body,
+        ResponseHandler<T> handler) throws IOException {
+        String repository = repository(url);
+        if (verb.equals("GET")) {
+            record(new Request(verb, url, 0));
+            boolean touched;
+            synchronized (this) {
+                touched = this.created.contains(repository)
+                    || this.populated.contains(repository);
+            }
+            long start = System.nanoTime();
+            try {
+                return this.https.send(verb, url, null, handler);
+            } catch (HttpStatusException e) {
+                if (!touched || !HttpStatusException.hasStatus(e, 404, 409)) {
+                    throw e;
+                }
+            } finally {
+                synchronized (this) {
+                    this.readNanos += System.nanoTime() - start;
+                    this.reads++;
+                }
+            }
+            return handler.handle(new ByteArrayInputStream(
+                afterWrites(url, repository).getBytes(
+                    StandardCharsets.UTF_8)));
+        }
+
+        ByteArrayOutputStream newRepository = new ByteArrayOutputStream();
+        long[] length = new long[1];
+        if (body != null) {
+            // Only the body creating a repository is kept, for its name.
+            boolean keep = url.equals("/user/repos");
+            body.writeTo(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    length[0]++;
+                    if (keep) {
+                        newRepository.write(b);
+                    }
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len)
+                    throws IOException {
+                    length[0] += len;
+                    if (keep) {
+                        newRepository.write(b, off, len);
+                    }
+                }
+            });
+        }
+        record(new Request(verb, url, length[0]));
+        String name = null;
+        if (url.equals("/user/repos") && newRepository.size() > 0) {
+            name = JsonReader.readFields(new ByteArrayInputStream(
+                newRepository.toByteArray()), "name").get("name");
+            if (exists(name)) {
+                throw new HttpStatusException(422, url, -1, -1, -1);
+            }
+        }
+        synchronized (this) {
+            if (name != null) {
+                this.created.add(name);
+            } else if (repository != null
+                && !url.contains("/collaborators/")) {
+                this.populated.add(repository);
+            }
+        }
+        return handler.handle(new ByteArrayInputStream(WRITTEN.getBytes(
+            StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return every request the submission would send, in the order they
+     * were made.
+     */
+    public synchronized List<Request> getRequests() {
+        return Collections.unmodifiableList(new ArrayList<>(this.requests));
+    }
+
+    /**
+     * @return how long the reads that were sent took on average, in
+     * milliseconds, or 0 if none were sent.
+     */
+    public synchronized long getAverageReadMillis() {
+        return this.reads == 0 ? 0 : this.readNanos / this.reads / 1000000;
+    }
+
+    /**
+     * Looks up whether the user already has a repository. The lookup is not
+     * recorded, since a real submission would not send it.
+     *
+     * @param name the name of the repository.
+     * @return whether the repository exists.
+     * @throws IOException if the lookup failed for any other reason.
+     */
+    private boolean exists(String name) throws IOException {
+        try {
+            this.https.get("/repos/" + this.username + "/" + name);
+            return true;
+        } catch (HttpStatusException e) {
+            if (!HttpStatusException.hasStatus(e, 404)) {
+                throw e;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Records a request.
+     *
+     * @param request the request.
+     */
+    private synchronized void record(Request request) {
+        this.requests.add(request);
+    }
+
+    /**
+     * Answers a read of a repository the way the server would once the
+     * writes recorded so far had been made.
+     *
+     * @param url the url of the read.
+     * @param repository the name of the repository.
+     * @return the body of the response.
+     * @throws HttpStatusException if the server would still fail the read.
+     */
+    private synchronized String afterWrites(String url, String repository)
+        throws HttpStatusException {
+        boolean populated = this.populated.contains(repository);
+        String[] path = url.split("\\?")[0].split("/");
+        if (path.length == 4) {
+            return "{\"default_branch\":\"main\"}";
+        } else if (populated && url.contains("/git/trees/")) {
+            return "{\"tree\":[],\"truncated\":false}";
+        } else if (populated && url.contains("/git/ref/")) {
+            return "{\"object\":{\"sha\":\"" + PLACEHOLDER_SHA + "\"}}";
+        } else if (populated && url.contains("/git/commits/")) {
+            return "{\"tree\":{\"sha\":\"" + PLACEHOLDER_SHA + "\"}}";
+        }
+        // Empty repositories have no branch, and new files are not there.
+        throw new HttpStatusException(url.contains("/git/") ? 409 : 404,
+            url, -1, -1, -1);
+    }
+
+    /**
+     * @param url the url of a request.
+     * @return the name of the repository the request is for, or null if it
+     * is not for a repository.
+     */
+    private static String repository(String url) {
+        String[] path = url.split("\\?")[0].split("/");
+        return path.length >= 4 && path[1].equals("repos") ? path[3] : null;
+    }
+
+    /**
+     * A request a submission would send.
+     */
+    public static class Request {
+        private String verb;
+        private String url;
+        private long bytes;
+
+        /**
+         * Public constructor.
+         *
+         * @param verb the kind of request.
+         * @param url the url of the request.
+         * @param bytes the size of the body of the request.
+         */
+        public Request(String verb, String url, long bytes) {
+            this.verb = verb;
+            this.url = url;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return the kind of request.
+         */
+        public String getVerb() {
+            return this.verb;
+        }
+
+        /**
+         * @return the url of the request.
+         */
+        public String getUrl() {
+            return this.url;
+        }
+
+        /**
+         * @return the size of the body of the request, in bytes.
+         */
+        public long getBytes() {
+            return this.bytes;
+        }
+
+        /**
+         * @return whether the request would change anything on the server.
+         */
+        public boolean isWrite() {
+            return !this.verb.equals("GET");
+        }
+    }
+}
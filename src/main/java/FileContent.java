@@ -0,0 +1,229 @@
+import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Represents the contents of a file that is being submitted. The file is read
+ * through a channel with a fixed-size buffer each time it is needed, so the
+ * memory used does not depend on how large the file is.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class FileContent {
+    private static final int BUFFER_SIZE = 48 * 1024;
+    private String fileName;
+    private Path path;
+    private long size;
+    private String blobSha;
+
+    /**
+     * Public constructor.
+     *
+     * @param fileName the name of the file.
+     * @throws FileNotFoundException if the file does not exist.
+     * @throws IOException if the size of the file could not be read.
+     */
+    public FileContent(String fileName) throws IOException {
+        this(Paths.get(""), fileName);
+    }
+
+    /**
+     * Public constructor for a file under some other directory than the
+     * working directory.
+     *
+     * @param directory the directory fileName is relative to.
+     * @param fileName the name of the file.
+     * @throws FileNotFoundException if the file does not exist.
+     * @throws IOException if the size of the file could not be read.
+     */
+    public FileContent(Path directory, String fileName) throws IOException {
+        this.fileName = fileName;
+        this.path = directory.resolve(fileName);
+        if (!Files.isRegularFile(this.path)) {
+            throw new FileNotFoundException(fileName
+                + " (No such file or directory)");
+        }
+        this.size = Files.size(this.path);
+    }
+
+    /**
+     * @return the name of the file.
+     */
+    public String getFileName() {
+        return this.fileName;
+    }
+
+    /**
+     * @return the size of the file in bytes.
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * @return the number of bytes in the file once encoded in base 64.
+     */
+    public long getBase64Length() {
+        return (this.size + 2) / 3 * 4;
+    }
+
+    /**
+     * Computes the SHA-1 that Git gives this file when it is stored as a
+     * blob, so it can be compared against what is already on the server
+     * without downloading anything.
+     *
+     * @return the blob SHA-1 as 40 hex digits.
+     * @throws IOException if the file could not be read.
+     */
+    public String getBlobSha() throws IOException {
+        if (this.blobSha == null) {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-1 is not available.", e);
+            }
+            digest.update(("blob " + this.size + "\0")
+                .getBytes(StandardCharsets.US_ASCII));
+            try (FileChannel channel = open()) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+            StringBuilder hex = new StringBuilder(40);
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b & 0xff));
+            }
+            this.blobSha = hex.toString();
+        }
+        return this.blobSha;
+    }
+
+    /**
+     * Checks whether the file is text, a buffer at a time.
+     *
+     * @return whether the contents are valid UTF-8.
+     * @throws IOException if the file could not be read.
+     */
+    public boolean isText() throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = open()) {
+            boolean end = false;
+            while (!end) {
+                end = channel.read(bytes) < 0;
+                bytes.flip();
+                CoderResult result;
+                do {
+                    chars.clear();
+                    result = decoder.decode(bytes, chars, end);
+                    if (result.isError()) {
+                        return false;
+                    }
+                } while (result.isOverflow());
+                // A character split across buffers is finished next time.
+                bytes.compact();
+            }
+        }
+        chars.clear();
+        return !decoder.flush(chars).isError();
+    }
+
+    /**
+     * Reads the entire file into memory. Only meant for small files.
+     *
+     * @return the contents of the file.
+     * @throws IOException if the file could not be read.
+     */
+    public byte[] readAllBytes() throws IOException {
+        try {
+            return Files.readAllBytes(this.path);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(this.fileName
+                + " (No such file or directory)");
+        }
+    }
+
+    /**
+     * Writes the file encoded in base 64. The stream is not closed.
+     *
+     * @param out the stream to write to.
+     * @throws IOException if the file could not be read or out could not be
+     * written to.
+     */
+    public void writeBase64(OutputStream out) throws IOException {
+        OutputStream encoder = Base64.getEncoder().wrap(
+            new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len)
+                    throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // The encoder closes this to write its padding, but the
+                    // rest of the request still needs the stream.
+                    flush();
+                }
+            });
+        try (FileChannel channel = open()) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                encoder.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+        }
+        encoder.close();
+    }
+
+    /**
+     * Opens the file for reading as UTF-8 text.
+     *
+     * @return a reader for the file, which the caller must close.
+     * @throws IOException if the file could not be opened.
+     */
+    public Reader openText() throws IOException {
+        return new InputStreamReader(Channels.newInputStream(open()),
+            StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens the file for reading.
+     *
+     * @return a channel for reading the file.
+     * @throws FileNotFoundException if the file no longer exists.
+     * @throws IOException if the file could not be opened.
+     */
+    private FileChannel open() throws IOException {
+        try {
+            return FileChannel.open(this.path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(this.fileName
+                + " (No such file or directory)");
+        }
+    }
+}
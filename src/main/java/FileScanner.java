@@ -0,0 +1,288 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds the files to submit. Directories are walked recursively, with each
+ * subdirectory scanned in parallel, and anything matching an ignore rule is
+ * skipped without being descended into.
+ *
+ * Rules use glob syntax, and work much like a .gitignore. A rule without a /
+ * in it matches a file or directory with that name anywhere in the tree. A
+ * rule with a / in it matches paths relative to the base directory. A rule
+ * ending in / only matches directories.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class FileScanner {
+    public static final String IGNORE_FILE = ".submitignore";
+    // bin and out are common names for source folders too, and the class
+    // files IDEs compile into them are left out anyway.
+    private static final List<String> DEFAULT_IGNORES = Arrays.asList(
+        ".git/", ".gradle/", ".idea/", ".vscode/", ".settings/", "build/",
+        "target/", "node_modules/", "*.class", ".DS_Store", IGNORE_FILE);
+    private Path base;
+    private List<Rule> ignores;
+
+    /**
+     * Public constructor.
+     *
+     * @param base the directory file names are relative to.
+     * @param ignorePatterns the rules for files that should not be submitted.
+     */
+    public FileScanner(Path base, List<String> ignorePatterns) {
+        this.base = base.toAbsolutePath().normalize();
+        this.ignores = new ArrayList<>();
+        for (String pattern : ignorePatterns) {
+            this.ignores.add(new Rule(pattern));
+        }
+    }
+
+    /**
+     * Creates a scanner that ignores build output, version control, and IDE
+     * files, along with anything listed in the base directory's .submitignore
+     * file if there is one. Blank lines and lines starting with # in that
+     * file are skipped.
+     *
+     * @param base the directory file names are relative to.
+     * @return the scanner.
+     * @throws IOException if the .submitignore file could not be read.
+     */
+    public static FileScanner withIgnoreFile(Path base) throws IOException {
+        List<String> patterns = new ArrayList<>(DEFAULT_IGNORES);
+        Path ignoreFile = base.resolve(IGNORE_FILE);
+        if (Files.isRegularFile(ignoreFile)) {
+            for (String line : Files.readAllLines(ignoreFile,
+                StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    patterns.add(line);
+                }
+            }
+        }
+        return new FileScanner(base, patterns);
+    }
+
+    /**
+     * Finds every file to submit. Each file name may be a file, which is
+     * always included, a directory, which is walked recursively, or a glob
+     * such as src/**.java, which includes every matching file under the base
+     * directory. A file name starting with ! is an extra ignore rule.
+     *
+     * @param fileNames the file names from the properties file.
+     * @return the paths of the files to submit relative to the base
+     * directory, using / as the separator, in sorted order. File names that
+     * do not exist are passed through unchanged.
+     * @throws IOException if a directory could not be read.
+     */
+    public List<String> scan(String... fileNames) throws IOException {
+        List<Rule> ignored = new ArrayList<>(this.ignores);
+        List<Rule> includes = new ArrayList<>();
+        List<Path> roots = new ArrayList<>();
+        TreeSet<String> found = new TreeSet<>();
+        for (String fileName : fileNames) {
+            if (fileName.isEmpty()) {
+                continue;
+            } else if (fileName.startsWith("!")) {
+                ignored.add(new Rule(fileName.substring(1)));
+            } else if (isGlob(fileName)) {
+                includes.add(new Rule(fileName));
+            } else {
+                Path path = this.base.resolve(fileName).normalize();
+                if (Files.isDirectory(path)) {
+                    roots.add(path);
+                } else if (Files.exists(path)) {
+                    found.add(toName(path));
+                } else {
+                    found.add(fileName);
+                }
+            }
+        }
+        List<DirectoryTask> tasks = new ArrayList<>();
+        for (Path root : roots) {
+            tasks.add(new DirectoryTask(root, ignored));
+        }
+        DirectoryTask globTask = null;
+        if (!includes.isEmpty()) {
+            globTask = new DirectoryTask(this.base, ignored);
+            tasks.add(globTask);
+        }
+        for (DirectoryTask task : tasks) {
+            ForkJoinPool.commonPool().execute(task);
+        }
+        for (DirectoryTask task : tasks) {
+            List<Path> files;
+            try {
+                files = task.join();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (Path file : files) {
+                if (task != globTask || matchesAny(includes, file, false)) {
+                    found.add(toName(file));
+                }
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Checks a path against the ignore rules the scanner was created with,
+     * leaving out any ! rules passed to scan.
+     *
+     * @param path a path under the base directory.
+     * @param directory whether the path is a directory.
+     * @return whether the path is ignored.
+     */
+    public boolean isIgnored(Path path, boolean directory) {
+        return matchesAny(this.ignores,
+            this.base.resolve(path).normalize(), directory);
+    }
+
+    /**
+     * @param fileName a file name from the properties file.
+     * @return whether the file name is a glob rather than a path.
+     */
+    static boolean isGlob(String fileName) {
+        return fileName.indexOf('*') >= 0 || fileName.indexOf('?') >= 0
+            || fileName.indexOf('[') >= 0 || fileName.indexOf('{') >= 0;
+    }
+
+    /**
+     * @param path an absolute path under the base directory.
+     * @return the path relative to the base directory using / separators.
+     */
+    private String toName(Path path) {
+        return this.base.relativize(path).toString()
+            .replace(path.getFileSystem().getSeparator(), "/");
+    }
+
+    /**
+     * @param rules the rules to check.
+     * @param path an absolute path under the base directory.
+     * @param directory whether the path is a directory.
+     * @return whether any rule matches the path.
+     */
+    private boolean matchesAny(List<Rule> rules, Path path,
+        boolean directory) {
+        Path relative = this.base.relativize(path);
+        for (Rule rule : rules) {
+            if (rule.matches(relative, directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A single compiled include or ignore rule.
+     */
+    private static class Rule {
+        private PathMatcher matcher;
+        private PathMatcher shallowMatcher;
+        private boolean directoryOnly;
+        private boolean matchName;
+
+        /**
+         * Compiles a rule.
+         *
+         * @param pattern the glob for the rule.
+         */
+        Rule(String pattern) {
+            if (pattern.endsWith("/")) {
+                this.directoryOnly = true;
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            } else {
+                this.matchName = pattern.indexOf('/') < 0;
+            }
+            this.matcher = FileSystems.getDefault().getPathMatcher(
+                "glob:" + pattern);
+            // Java's ** has to match at least one directory, so a/**/b would
+            // otherwise never match a/b.
+            if (pattern.contains("**/")) {
+                this.shallowMatcher = FileSystems.getDefault().getPathMatcher(
+                    "glob:" + pattern.replace("**/", ""));
+            }
+        }
+
+        /**
+         * @param relative a path relative to the base directory.
+         * @param directory whether the path is a directory.
+         * @return whether this rule matches the path.
+         */
+        boolean matches(Path relative, boolean directory) {
+            if (this.directoryOnly && !directory) {
+                return false;
+            }
+            Path target = this.matchName ? relative.getFileName() : relative;
+            return target != null && (this.matcher.matches(target)
+                || (this.shallowMatcher != null
+                    && this.shallowMatcher.matches(target)));
+        }
+    }
+
+    /**
+     * Scans a single directory, forking a new task for each subdirectory.
+     */
+    private class DirectoryTask extends RecursiveTask<List<Path>> {
+        private static final long serialVersionUID = 1L;
+        private Path dir;
+        private List<Rule> ignored;
+
+        /**
+         * @param dir the directory to scan.
+         * @param ignored the rules for what to skip.
+         */
+        DirectoryTask(Path dir, List<Rule> ignored) {
+            this.dir = dir;
+            this.ignored = ignored;
+        }
+
+        @Override
+        protected List<Path> compute() {
+            List<Path> files = new ArrayList<>();
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries =
+                Files.newDirectoryStream(this.dir)) {
+                for (Path entry : entries) {
+                    // Links to directories are not followed, since they can
+                    // lead in circles.
+                    boolean directory = Files.isDirectory(entry,
+                        LinkOption.NOFOLLOW_LINKS);
+                    if (matchesAny(this.ignored, entry, directory)) {
+                        continue;
+                    } else if (directory) {
+                        DirectoryTask task = new DirectoryTask(entry,
+                            this.ignored);
+                        task.fork();
+                        subdirectories.add(task);
+                    } else if (Files.isRegularFile(entry)) {
+                        files.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (DirectoryTask task : subdirectories) {
+                files.addAll(task.join());
+            }
+            return files;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thrown when one or more files could not be submitted. Rather than stopping
+ * at the first failure, every file is attempted, and this collects what
+ * happened to each of them.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class FileSubmissionException extends IOException {
+    private static final long serialVersionUID = 1L;
+    private List<String> submitted;
+    private Map<String, IOException> failures;
+
+    /**
+     * Public constructor.
+     *
+     * @param submitted the names of the files that were submitted.
+     * @param failures the names of the files that could not be submitted,
+     * mapped to the reason why.
+     */
+    public FileSubmissionException(List<String> submitted,
+        Map<String, IOException> failures) {
+        super(describe(failures));
+        this.submitted = Collections.unmodifiableList(submitted);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Builds a message listing every failed file and its reason.
+     *
+     * @param failures the failed files mapped to the reason why.
+     * @return the message for this exception.
+     */
+    private static String describe(Map<String, IOException> failures) {
+        StringBuilder message = new StringBuilder();
+        message.append(failures.size()).append(" file(s) failed to submit:");
+        for (Map.Entry<String, IOException> failure : failures.entrySet()) {
+            message.append("\n    ").append(failure.getKey()).append(": ")
+                .append(failure.getValue());
+        }
+        return message.toString();
+    }
+
+    /**
+     * @return the names of the files that were submitted successfully.
+     */
+    public List<String> getSubmitted() {
+        return this.submitted;
+    }
+
+    /**
+     * @return the names of the files that failed, mapped to the reason why.
+     */
+    public Map<String, IOException> getFailures() {
+        return this.failures;
+    }
+}
@@ -1,10 +1,16 @@
 import java.io.IOException;
-import javax.net.ssl.HttpsURLConnection;
+import java.net.ProtocolException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
 import java.net.URL;
 import java.util.Base64;
-import java.io.InputStreamReader;
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Represents a service for processing various HTTPS requests to a GitHub web
@@ -17,6 +23,16 @@ public class GitHubHttpsService implements HttpsService {
     private String hostURL;
     private String username;
     private String password;
+    private RetryPolicy retryPolicy;
+    private RequestThrottle throttle;
+    private SubmissionMetrics metrics;
+    private RetryListener retryListener;
+    private HttpCache cache;
+    private int connectTimeout;
+    private int readTimeout;
+    private volatile boolean compressRequests;
+    private static final int STREAM_CHUNK_SIZE = 64 * 1024;
+    private static final int COMPRESS_THRESHOLD = 1024;
 
     /**
      * Public constructor.
@@ -30,6 +46,125 @@ public class GitHubHttpsService implements HttpsService {
         this.hostURL = hostURL;
         this.username = username;
         this.password = password;
+        this.retryPolicy = new RetryPolicy();
+    }
+
+    /**
+     * Sets who to authenticate as, for a service that was created before
+     * the student had logged in.
+     *
+     * @param username the username needed to authenticate with GitHub.
+     * @param password the password needed to authenticate with GitHub.
+     */
+    public void setCredentials(String username, String password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Opens a connection to the server ahead of the first request, so that
+     * looking up the host and the TLS handshake are done while there is
+     * nothing else to do, such as while the student types their password.
+     * The response is read to the end, which leaves the connection in the
+     * JVM's keep-alive pool for the first real request to reuse. Asks for
+     * /rate_limit, which GitHub does not count against the rate limit, and
+     * needs no credentials.
+     *
+     * @return whether the server could be reached. The first real request
+     * reports why if it could not.
+     */
+    public boolean warmUp() {
+        try {
+            URL obj = new URL(this.hostURL + "/rate_limit");
+            HttpURLConnection con = openConnection(obj);
+            con.setConnectTimeout(this.connectTimeout);
+            con.setReadTimeout(this.readTimeout);
+            con.setRequestProperty("Accept-Encoding", "gzip");
+            InputStream in = con.getResponseCode() >= 400
+                ? con.getErrorStream() : con.getInputStream();
+            if (in != null) {
+                byte[] rest = new byte[STREAM_CHUNK_SIZE];
+                while (in.read(rest) >= 0) {
+                    continue;
+                }
+                in.close();
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sets the policy for retrying failed requests.
+     *
+     * @param retryPolicy the policy to retry with.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Sets the throttle every request has to pass through. Should be shared
+     * with every other service talking to the same server.
+     *
+     * @param throttle the throttle, or null to send requests unpaced.
+     */
+    public void setThrottle(RequestThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    /**
+     * Sets where to record the timing of every request.
+     *
+     * @param metrics where to record requests, or null not to record them.
+     */
+    public void setMetrics(SubmissionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets who to tell when a request is retried.
+     *
+     * @param retryListener who to tell, or null to tell no one.
+     */
+    public void setRetryListener(RetryListener retryListener) {
+        this.retryListener = retryListener;
+    }
+
+    /**
+     * Sets the cache to revalidate GET responses against, rather than
+     * downloading them again.
+     *
+     * @param cache the cache, or null not to cache responses.
+     */
+    public void setCache(HttpCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets how long each attempt at a request may wait on the server before
+     * it fails and is retried as the retry policy allows.
+     *
+     * @param connectTimeout how long to wait for a connection, in
+     * milliseconds, or 0 to wait as long as it takes.
+     * @param readTimeout how long to wait for the server to send anything,
+     * in milliseconds, or 0 to wait as long as it takes.
+     */
+    public void setTimeouts(int connectTimeout, int readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Sets whether to gzip request bodies. Only bodies of at least a
+     * kilobyte are compressed. If the server turns down a compressed body,
+     * it is sent again uncompressed, and nothing is compressed from then on.
+     *
+     * @param compressRequests whether to gzip request bodies.
+     */
+    public void setCompressRequests(boolean compressRequests) {
+        this.compressRequests = compressRequests;
     }
 
     /**
@@ -38,7 +173,7 @@ public class GitHubHttpsService implements HttpsService {
     @Override
     public String get(String urlExt) throws IllegalArgumentException,
         IOException {
-        return https("GET", urlExt, new String[][]{});
+        return https("GET", urlExt, null, ResponseHandler.string());
     }
 
     /**
@@ -60,106 +195,337 @@ public class GitHubHttpsService implements HttpsService {
     }
 
     /**
-     * Formats the properties string into JSON format.
+     * @param urlExt An extension to this.hostURL.
+     */
+    @Override
+    public <T> T send(String verb, String urlExt, RequestBody body,
+        ResponseHandler<T> handler) throws IOException {
+        return https(verb, urlExt, body, handler);
+    }
+
+    /**
+     * Sends an https request. Site should support HTTPS. The return value of
+     * this method is the server's response. I'll include some comments in the
+     * code for clarity.
      *
+     * @param verb the kind of request (e.g GET, POST, PUT, DELETE, etc.).
+     * @param urlExt An extension to this.hostURL.
      * @param properties an array of length 2 String arrays that represents the
      * properties for the post request. Each length 2 String[] is in the format
      * {property, value}.
-     * @return properties formatted into JSON.
+     * @return a String containing the response from the server.
+     * @throws IllegalArgumentException when properties is malformed.
+     * @throws IOException when something goes wrong connecting to the server.
      */
-    private String jsonifyPropertyString(String[][] properties) {
-        String propertyString = "{";
-        for (int i = 0; i < properties.length - 1; i++) {
-            propertyString += "\"" + properties[i][0] + "\":\""
-                + properties[i][1] + "\",";
-        }
-        if (properties.length > 0) {
-            propertyString += "\"" + properties[properties.length - 1][0]
-                + "\":\"" + properties[properties.length - 1][1] + "\"";
-        }
-        propertyString += "}";
-        return propertyString;
+    private String https(String verb, String urlExt, String[][] properties)
+        throws IllegalArgumentException, IOException {
+        return https(verb, urlExt, RequestBody.properties(properties),
+            ResponseHandler.string());
     }
 
     /**
-     * Verifies that the properties array is not malformed.
+     * Sends an https request, streaming the body to the server as it is
+     * written rather than buffering all of it first, and handing the
+     * response to handler as it arrives. Failed attempts are retried as the
+     * retry policy allows.
      *
-     * @param properties the properties to pass into the request.
-     * @throws IllegalArgumentException in the event that properties is
-     * malformed.
+     * @param verb the kind of request (e.g GET, POST, PUT, PATCH, etc.).
+     * @param urlExt An extension to this.hostURL.
+     * @param body the body of the request, or null for no body.
+     * @param handler reads the response.
+     * @param <T> what the response is read into.
+     * @return whatever handler read the response into.
+     * @throws IOException when something goes wrong connecting to the server.
      */
-    private void verifyProperties(String[][] properties)
-        throws IllegalArgumentException {
-        if (properties == null) {
-            throw new IllegalArgumentException("properties must be non-null.");
-        } else {
-            for (int i = 0; i < properties.length; i++) {
-                String[] property = properties[i];
-                if (property == null) {
-                    throw new IllegalArgumentException("Element " + i
-                        + " in properties is null, and must be non-null.");
+    private <T> T https(String verb, String urlExt, RequestBody body,
+        ResponseHandler<T> handler) throws IOException {
+        SubmissionMetrics.Request timing = new SubmissionMetrics.Request(
+            verb, urlExt);
+        RetryListener retried = null;
+        try {
+            for (int attempt = 1;; attempt++) {
+                // A request that was cancelled is not attempted again.
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted before "
+                        + "sending " + verb + " " + urlExt);
                 }
-                if (property.length != 2) {
-                    throw new IllegalArgumentException("Element " + i
-                        + " in properties is of length " + property.length
-                        + " and must be of length 2.");
+                try {
+                    if (this.throttle == null) {
+                        timing.attempt(attempt);
+                        return attempt(verb, urlExt, body, handler, timing);
+                    }
+                    this.throttle.acquire(verb);
+                    try {
+                        timing.attempt(attempt);
+                        return attempt(verb, urlExt, body, handler, timing);
+                    } finally {
+                        this.throttle.release(verb);
+                    }
+                } catch (IOException e) {
+                    long delay = this.retryPolicy.retryDelay(verb, urlExt,
+                        attempt, e);
+                    if (delay < 0) {
+                        throw e;
+                    }
+                    retried = this.retryListener;
+                    if (retried != null) {
+                        retried.retrying(verb, urlExt, attempt, delay);
+                    }
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while "
+                            + "waiting to retry " + verb + " " + urlExt);
+                    }
                 }
             }
+        } finally {
+            timing.finished();
+            if (this.metrics != null) {
+                this.metrics.record(timing);
+            }
+            if (retried != null) {
+                retried.retried(verb, urlExt);
+            }
         }
     }
 
     /**
-     * Sends an https request. Site should support HTTPS. The return value of
-     * this method is the server's response. I'll include some comments in the
-     * code for clarity.
+     * Makes a single attempt at an https request.
      *
-     * @param verb the kind of request (e.g GET, POST, PUT, DELETE, etc.).
+     * @param verb the kind of request (e.g GET, POST, PUT, PATCH, etc.).
      * @param urlExt An extension to this.hostURL.
-     * @param properties an array of length 2 String arrays that represents the
-     * properties for the post request. Each length 2 String[] is in the format
-     * {property, value}.
-     * @return a String containing the response from the server.
-     * @throws IllegalArgumentException when properties is malformed.
+     * @param body the body of the request, or null for no body.
+     * @param handler reads the response.
+     * @param timing where to mark each phase of the attempt.
+     * @param <T> what the response is read into.
+     * @return whatever handler read the response into.
+     * @throws HttpStatusException when the server responds with an error.
      * @throws IOException when something goes wrong connecting to the server.
      */
-    private String https(String verb, String urlExt, String[][] properties)
-        throws IllegalArgumentException, IOException {
-        verifyProperties(properties);
-
-        // Creates the connection.
+    private <T> T attempt(String verb, String urlExt, RequestBody body,
+        ResponseHandler<T> handler, SubmissionMetrics.Request timing)
+        throws IOException {
+        // Creates the connection. The host is looked up first only so that
+        // the lookup can be timed apart from connecting; the JVM caches it.
         URL obj = new URL(this.hostURL + urlExt);
-        HttpsURLConnection con = (HttpsURLConnection) obj.openConnection();
+        InetAddress.getAllByName(obj.getHost());
+        timing.lookedUp();
+        HttpURLConnection con = openConnection(obj);
+        con.setConnectTimeout(this.connectTimeout);
+        con.setReadTimeout(this.readTimeout);
 
-        con.setRequestMethod(verb.toUpperCase());
+        setRequestMethod(con, verb.toUpperCase());
 
         // Uses basic authentication with the server.
         String encoded = new String(Base64.getEncoder().encode(
                 (this.username + ":" + this.password).getBytes()));
         con.setRequestProperty("Authorization", "Basic " + encoded);
 
-        // Formats the properties as a JSON object.
-        String propertyString = jsonifyPropertyString(properties);
+        // Asks the server to only send the response if it has changed since
+        // it was cached.
+        String cacheKey = this.username + " " + obj;
+        HttpCache.Entry cached = null;
+        boolean cacheable = this.cache != null
+            && verb.toUpperCase().equals("GET");
+        if (cacheable) {
+            cached = this.cache.get(cacheKey);
+        }
+        if (cached != null && cached.getETag() != null) {
+            con.setRequestProperty("If-None-Match", cached.getETag());
+        }
+        if (cached != null && cached.getLastModified() != null) {
+            con.setRequestProperty("If-Modified-Since",
+                cached.getLastModified());
+        }
+
+        // Responses are compressed whenever the server is willing to.
+        con.setRequestProperty("Accept-Encoding", "gzip");
 
         // Sending properties murders everything with GET requests.
-        if (!verb.toUpperCase().equals("GET")) {
+        boolean hasBody = body != null && !verb.toUpperCase().equals("GET");
+        // Measuring a body can mean writing all of it, so it is only done
+        // once.
+        long length = hasBody ? body.getLength() : -1;
+        boolean compressed = hasBody && this.compressRequests
+            && (length < 0 || length >= COMPRESS_THRESHOLD);
+        if (hasBody) {
             con.setDoOutput(true);
-            DataOutputStream out = new DataOutputStream(con.getOutputStream());
-            out.writeBytes(propertyString);
+            // Without a streaming mode the whole body is buffered in memory.
+            // How long a compressed body is cannot be known until it has
+            // been written.
+            if (length >= 0 && !compressed) {
+                con.setFixedLengthStreamingMode(length);
+            } else {
+                con.setChunkedStreamingMode(STREAM_CHUNK_SIZE);
+            }
+        }
+        if (compressed) {
+            con.setRequestProperty("Content-Encoding", "gzip");
+        }
+        con.connect();
+        timing.connected();
+        if (hasBody) {
+            OutputStream out = timing.countOut(con.getOutputStream());
+            if (compressed) {
+                out = new GZIPOutputStream(out, STREAM_CHUNK_SIZE);
+            }
+            out = new BufferedOutputStream(out, STREAM_CHUNK_SIZE);
+            body.writeTo(out);
             out.flush();
             out.close();
         }
+        timing.uploaded();
 
         // Gets the server's response.
-        BufferedReader in = new BufferedReader(
-            new InputStreamReader(con.getInputStream()));
-        String inputLine;
-        StringBuffer response = new StringBuffer();
+        int status = con.getResponseCode();
+        timing.respondedWith(status);
+        long remaining = headerValue(con, "X-RateLimit-Remaining");
+        long reset = headerValue(con, "X-RateLimit-Reset");
+        if (this.throttle != null) {
+            this.throttle.update(remaining, reset);
+        }
+        if (status < 0) {
+            throw new IOException("Invalid response from " + obj);
+        } else if (compressed && (status == 400 || status == 415)) {
+            // The server cannot read compressed bodies.
+            discardErrorResponse(con);
+            this.compressRequests = false;
+            return attempt(verb, urlExt, body, handler, timing);
+        } else if (status >= 400) {
+            discardErrorResponse(con);
+            throw new HttpStatusException(status, obj.toString(),
+                headerValue(con, "Retry-After"), remaining, reset);
+        }
+        InputStream in = timing.countIn(con.getInputStream());
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+            in.close();
+            in = cached.open();
+        } else {
+            // The cache keeps responses uncompressed.
+            if ("gzip".equalsIgnoreCase(con.getHeaderField(
+                "Content-Encoding"))) {
+                in = new GZIPInputStream(in, STREAM_CHUNK_SIZE);
+            }
+            if (cacheable) {
+                in = cacheResponse(con, cacheKey, in);
+            }
+        }
+        in = new BufferedInputStream(in);
+        try {
+            T response = handler.handle(in);
+            // Whatever the handler skipped is drained, so the connection can
+            // be reused.
+            byte[] rest = new byte[STREAM_CHUNK_SIZE];
+            while (in.read(rest) >= 0) {
+                continue;
+            }
+            return response;
+        } finally {
+            in.close();
+        }
+    }
 
-        while ((inputLine = in.readLine()) != null) {
-            response.append(inputLine);
+    /**
+     * Caches a response as it is read, if it came with a validator to ask
+     * the server whether it has changed.
+     *
+     * @param con the connection the response came back on.
+     * @param cacheKey what to cache the response under.
+     * @param in the body of the response.
+     * @return a stream to read the body from instead of in.
+     */
+    private InputStream cacheResponse(HttpURLConnection con, String cacheKey,
+        InputStream in) {
+        String etag = con.getHeaderField("ETag");
+        String lastModified = con.getHeaderField("Last-Modified");
+        if (etag == null && lastModified == null) {
+            return in;
+        }
+        try {
+            return this.cache.store(cacheKey, etag, lastModified, in);
+        } catch (IOException e) {
+            // The request does not need the cache to succeed.
+            return in;
         }
-        in.close();
+    }
 
-        return response.toString();
+    /**
+     * Reads a header that holds a whole number.
+     *
+     * @param con the connection the response came back on.
+     * @param name the name of the header.
+     * @return the value of the header, or -1 if it is missing or not a
+     * number.
+     */
+    private static long headerValue(HttpURLConnection con, String name) {
+        String value = con.getHeaderField(name);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Opens a connection for a single request. The request method and
+     * headers have not been set yet. The connection is only plain HTTP when
+     * hostURL is, which is only useful for talking to a local stand-in for
+     * GitHub.
+     *
+     * @param url the url to connect to.
+     * @return the connection.
+     * @throws IOException if the connection could not be opened.
+     */
+    protected HttpURLConnection openConnection(URL url) throws IOException {
+        return (HttpURLConnection) url.openConnection();
+    }
+
+    /**
+     * Sets the method of a request. HttpURLConnection refuses PATCH, which
+     * GitHub needs to move a branch, so PATCH is sent as a POST carrying
+     * X-HTTP-Method-Override, which GitHub honors.
+     *
+     * @param con the connection.
+     * @param verb the kind of request, in upper case.
+     * @throws ProtocolException if the method is not a valid HTTP method.
+     */
+    private static void setRequestMethod(HttpURLConnection con, String verb)
+        throws ProtocolException {
+        if (verb.equals("PATCH")) {
+            con.setRequestMethod("POST");
+            con.setRequestProperty("X-HTTP-Method-Override", verb);
+        } else {
+            con.setRequestMethod(verb);
+        }
+    }
+
+    /**
+     * Called when the server responds with an error, before the error is
+     * thrown. Reads the error to the end, so that its connection goes back
+     * into the JVM's keep-alive pool instead of being thrown away.
+     *
+     * @param con the connection the error came back on.
+     */
+    protected void discardErrorResponse(HttpURLConnection con) {
+        InputStream error = con.getErrorStream();
+        if (error == null) {
+            return;
+        }
+        byte[] rest = new byte[STREAM_CHUNK_SIZE];
+        try {
+            while (error.read(rest) >= 0) {
+                continue;
+            }
+            error.close();
+        } catch (IOException e) {
+            // The connection is not reusable, so it is simply dropped.
+            return;
+        }
     }
 }
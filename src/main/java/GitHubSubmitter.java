@@ -2,14 +2,25 @@ import java.net.UnknownHostException;
 import java.io.IOException;
 import java.io.FileNotFoundException;
 import java.io.File;
-import java.io.FilenameFilter;
-import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
-import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * GitHub submitter for CS1331 homework assignments. See the README.md for
@@ -24,8 +35,19 @@ public class GitHubSubmitter {
     private String repositoryName;
     private String username;
     private String headTA;
+    private Path directory = Paths.get("");
+    private String[] requestedFileNames;
     private String[] fileNames;
-    private static final int RETRIES = 3;
+    private Map<String, String> blobShas = new ConcurrentHashMap<>();
+    private boolean singleCommit;
+    private int concurrency = 1;
+    private SubmissionManifest manifest;
+    private SubmissionMetrics metrics;
+    private SubmissionJournal journal;
+    private UploadProgress progress;
+    private long largeFileThreshold = 1024 * 1024;
+    private static final String COMMIT_MESSAGE = "Submitting files";
+    private static final int RECOVERY_ATTEMPTS = 3;
 
     /**
      * Public constructor.
@@ -40,49 +62,244 @@ public class GitHubSubmitter {
      */
     public GitHubSubmitter(String hostURL, String repositoryName,
         String headTA, String username, String password, String... fileNames) {
+        this(new GitHubHttpsService(hostURL, username, password),
+            repositoryName, headTA, username, fileNames);
+    }
 
-        this.https = new GitHubHttpsService(hostURL, username, password);
+    /**
+     * Public constructor for submitting through a particular HttpsService.
+     *
+     * @param https the service to send requests to GitHub through, already
+     * authenticated as the student.
+     * @param repositoryName what to name the repository.
+     * @param headTA the GT ID of the headTA cloning the submissions.
+     * @param username the username of the student.
+     * @param fileNames the files for this assignment.
+     */
+    public GitHubSubmitter(HttpsService https, String repositoryName,
+        String headTA, String username, String... fileNames) {
+        this.https = https;
         this.repositoryName = repositoryName;
         this.username = username;
         this.headTA = headTA;
-        this.fileNames = processFileNames(fileNames);
+        this.requestedFileNames = fileNames;
     }
 
     /**
-     * Processes the fileNames.
+     * Processes the fileNames, walking any directories recursively and
+     * leaving out ignored files. See FileScanner for the rules.
      *
-     * @param fileNames
+     * @param fileNames the file names, directories, and globs to submit.
+     * @return the names of the files to submit, relative to the working
+     * directory with / as the separator.
+     * @throws IOException if a directory could not be read.
      */
-    private String[] processFileNames(String... fileNames) {
-        ArrayList<String> fileNamesList = new ArrayList<String>();
-        for (String fileName : fileNames) {
-            File dir = new File(fileName);
-            File[] files = dir.listFiles(new FilenameFilter() {
-                @Override
-                public boolean accept(File dir, String name) {
-                    return !name.endsWith(".class");
-                }
-            });
+    private String[] processFileNames(String... fileNames) throws IOException {
+        List<String> files = FileScanner.withIgnoreFile(this.directory)
+            .scan(fileNames);
+        return files.toArray(new String[files.size()]);
+    }
 
-            if (files != null) {
-                for (File javaFile : files) {
-                    fileNamesList.add(javaFile.toString());
-                }
-            } else {
-                fileNamesList.add(fileName);
+    /**
+     * Finds the files to submit and hashes every one of them. Everything that
+     * needs the files does this itself, but calling it ahead of time lets the
+     * work overlap with requests that do not need the files, such as
+     * creating the repository. Only done once.
+     *
+     * @throws IOException if a directory or file could not be read.
+     */
+    public void prepare() throws IOException {
+        localShas();
+    }
+
+    /**
+     * @return the names of the files to submit, which are found the first
+     * time this is called.
+     * @throws IOException if a directory could not be read.
+     */
+    private synchronized String[] files() throws IOException {
+        if (this.fileNames == null) {
+            this.fileNames = processFileNames(this.requestedFileNames);
+        }
+        return this.fileNames;
+    }
+
+    /**
+     * Finds and hashes the files to submit, ahead of creating a submitter,
+     * such as while the student is still logging in.
+     *
+     * @param fileNames the file names, directories, and globs to submit.
+     * @return the blob SHA-1 of every file to submit, by name, in the order
+     * they would be submitted.
+     * @throws IOException if a directory or file could not be read.
+     */
+    public static Map<String, String> hashFiles(String... fileNames)
+        throws IOException {
+        Map<String, String> shas = new LinkedHashMap<>();
+        for (String fileName : FileScanner.withIgnoreFile(Paths.get(""))
+            .scan(fileNames)) {
+            shas.put(fileName, new FileContent(fileName).getBlobSha());
+        }
+        return shas;
+    }
+
+    /**
+     * Uses files that were already found and hashed by hashFiles, rather
+     * than finding and hashing them again.
+     *
+     * @param shas the blob SHA-1 of every file to submit, by name, in the
+     * order to submit them.
+     */
+    public synchronized void setHashedFiles(Map<String, String> shas) {
+        this.fileNames = shas.keySet().toArray(new String[shas.size()]);
+        this.blobShas.putAll(shas);
+    }
+
+    /**
+     * Finds the files to submit again, and forgets the hashes of any that
+     * changed, so the next submission only pushes what changed since the
+     * last one.
+     *
+     * @param changed the paths that changed relative to the working
+     * directory, using / as the separator, or null if anything may have.
+     * @return the files to submit that changed, or are new.
+     * @throws IOException if a directory could not be read.
+     */
+    public synchronized List<String> refresh(Collection<String> changed)
+        throws IOException {
+        this.fileNames = processFileNames(this.requestedFileNames);
+        List<String> refreshed = new ArrayList<>();
+        for (String fileName : this.fileNames) {
+            if (changed == null || changed.contains(fileName)
+                || !this.blobShas.containsKey(fileName)) {
+                this.blobShas.remove(fileName);
+                refreshed.add(fileName);
             }
         }
-        String[] toReturn = new String[fileNamesList.size()];
-        for (int i = 0; i < toReturn.length; i++) {
-            String name = fileNamesList.get(i);
-            if (name.indexOf("." + File.separator) == 0) {
-                name = name.substring(2, name.length());
+        return refreshed;
+    }
+
+    /**
+     * @return the blob SHA-1 of every file to submit, in the same order as
+     * files(). Each file is only hashed once.
+     * @throws IOException if a file could not be read.
+     */
+    private List<String> localShas() throws IOException {
+        return forEachFile(files(), fileName -> {
+            String sha = this.blobShas.get(fileName);
+            if (sha == null) {
+                sha = content(fileName).getBlobSha();
+                this.blobShas.put(fileName, sha);
             }
-            String separator = File.separator.replaceAll("\\\\", "\\\\\\\\");
-            name = name.replaceAll(separator, "/");
-            toReturn[i] = name;
+            return sha;
+        });
+    }
+
+    /**
+     * Sets the directory the files to submit are found in. Their names in
+     * the repository are relative to it.
+     *
+     * @param directory the directory, which is the working directory unless
+     * this is called.
+     */
+    public synchronized void setDirectory(Path directory) {
+        this.directory = directory;
+        this.fileNames = null;
+        this.blobShas.clear();
+    }
+
+    /**
+     * @param fileName the name of a file to submit.
+     * @return the file, under this.directory.
+     * @throws IOException if the file does not exist or could not be read.
+     */
+    private FileContent content(String fileName) throws IOException {
+        return new FileContent(this.directory, fileName);
+    }
+
+    /**
+     * Sets whether files are submitted together as a single commit through the
+     * Git Data API, rather than one commit per file through the contents API.
+     *
+     * @param singleCommit true to submit all files in a single commit.
+     */
+    public void setSingleCommit(boolean singleCommit) {
+        this.singleCommit = singleCommit;
+    }
+
+    /**
+     * Sets how many files may be uploaded at the same time.
+     *
+     * @param concurrency the maximum number of uploads in flight at once.
+     * @throws IllegalArgumentException if concurrency is less than 1.
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least "
+                + "1, but was " + concurrency + ".");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sets the manifest of what was last pushed to the repository. Files that
+     * have not changed since then are skipped, and files that have are
+     * updated without first asking the server for their SHA.
+     *
+     * @param manifest the manifest for this repository, or null to push every
+     * file.
+     */
+    public void setManifest(SubmissionManifest manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Sets the journal to record progress in as it is confirmed. Files and
+     * blobs the journal shows were already pushed by a run that was cut off
+     * are not sent again.
+     *
+     * @param journal the journal for this repository, or null not to keep
+     * one.
+     */
+    public void setJournal(SubmissionJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Sets where to record how long each file took to submit.
+     *
+     * @param metrics where to record files, or null not to record them.
+     */
+    public void setMetrics(SubmissionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets where to report which files are being pushed, how many of them
+     * have been, and the progress of each file uploaded as a blob.
+     *
+     * @param progress where to report progress, or null not to report it.
+     */
+    public void setProgress(UploadProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Sets how big a file has to be to be uploaded as a blob, rather than
+     * sent through the contents API or inline with a tree. Blobs go through
+     * the Git Data API, which takes much bigger files than the contents API
+     * does.
+     *
+     * @param largeFileThreshold the size in bytes over which files are
+     * uploaded as blobs.
+     * @throws IllegalArgumentException if largeFileThreshold is negative.
+     */
+    public void setLargeFileThreshold(long largeFileThreshold) {
+        if (largeFileThreshold < 0) {
+            throw new IllegalArgumentException("largeFileThreshold must not "
+                + "be negative, but was " + largeFileThreshold + ".");
         }
-        return toReturn;
+        this.largeFileThreshold = largeFileThreshold;
     }
 
     /**
@@ -92,6 +309,22 @@ public class GitHubSubmitter {
         return this.repositoryName;
     }
 
+    /**
+     * Checks that the username and password are the user's, by asking the
+     * server who they belong to.
+     *
+     * @throws HttpStatusException with a 401 if they do not belong to the
+     * user.
+     * @throws IOException if there was a connection error.
+     */
+    public void checkCredentials() throws IOException {
+        String login = this.https.send("GET", "/user", null,
+            ResponseHandler.field("login"));
+        if (login == null || !login.equalsIgnoreCase(this.username)) {
+            throw new HttpStatusException(401, "/user", -1, -1, -1);
+        }
+    }
+
     /**
      * Attempts to create the user's repository for the homework assignment.
      * The repository will be made private. In the event that the repository
@@ -102,12 +335,34 @@ public class GitHubSubmitter {
      * already exists, or there was an authentication error.
      */
     public boolean createRepository() throws IOException {
-        https.post("/user/repos",
-            new String[][]{
-                {"name", this.repositoryName},
-                {"private", "true"}
-            });
-        return true;
+        for (int attempt = 1;; attempt++) {
+            try {
+                https.post("/user/repos",
+                    new String[][]{
+                        {"name", this.repositoryName},
+                        {"private", "true"}
+                    });
+                return true;
+            } catch (IOException e) {
+                // Creating a repository is not safe to send twice, so
+                // whether the failed attempt went through is read back
+                // before trying again.
+                if (attempt >= RECOVERY_ATTEMPTS
+                    || !RetryPolicy.isTransient(e)) {
+                    throw e;
+                }
+                try {
+                    https.send("GET", String.format("/repos/%s/%s",
+                        this.username, this.repositoryName), null,
+                        ResponseHandler.field("id"));
+                    return true;
+                } catch (HttpStatusException missing) {
+                    if (!HttpStatusException.hasStatus(missing, 404)) {
+                        throw e;
+                    }
+                }
+            }
+        }
     }
 
     /**
@@ -131,62 +386,74 @@ public class GitHubSubmitter {
     /**
      * Attempts to create a new file in the Git repository.
      *
-     * @param fileName the name of the file to create.
-     * @param encodedContent the new file contents encoded in base 64.
+     * @param content the file to create, which is streamed to the server
+     * encoded in base 64.
      * @throws IOException if there was a connection issue, an authentication
      * issue, or the file exists.
      */
-    public void createFile(String fileName, String encodedContent)
-        throws IOException {
-        https.put(String.format("/repos/%s/%s/contents/%s",
+    public void createFile(FileContent content) throws IOException {
+        String fileName = content.getFileName();
+        https.send("PUT", String.format("/repos/%s/%s/contents/%s",
             this.username, this.repositoryName, fileName),
-            new String[][]{
-                {"path", fileName},
-                {"message", "Initial add"},
-                {"content", encodedContent}
-            });
+            RequestBody.json(json -> json.beginObject()
+                .name("path").value(fileName)
+                .name("message").value("Initial add")
+                .name("content").base64Value(content)
+                .endObject()));
     }
 
     /**
      * Attempts to update an existing file in the Git repository.
      *
-     * @param fileName the name of the file to update.
-     * @param encodedContent the new file contents encoded in base 64.
+     * @param content the new contents of the file, which are streamed to the
+     * server encoded in base 64.
      * @throws IOException if there was a connection issue, an authentication
      * issue, or the file does not exist.
      */
-    public void updateFile(String fileName, String encodedContent)
+    public void updateFile(FileContent content) throws IOException {
+        String sha = https.send("GET", String.format(
+            "/repos/%s/%s/contents/%s", this.username, this.repositoryName,
+            content.getFileName()), null, ResponseHandler.field("sha"));
+        updateFile(content, sha);
+    }
+
+    /**
+     * Attempts to update an existing file in the Git repository, when the
+     * SHA of what is currently there is already known.
+     *
+     * @param content the new contents of the file, which are streamed to the
+     * server encoded in base 64.
+     * @param sha the blob SHA-1 of the file currently in the repository.
+     * @throws IOException if there was a connection issue, an authentication
+     * issue, the file does not exist, or sha is out of date.
+     */
+    public void updateFile(FileContent content, String sha)
         throws IOException {
-        String response = https.get(String.format("/repos/%s/%s/contents/%s",
-            this.username, this.repositoryName, fileName));
-        int start = response.indexOf("\"sha\"") + 7;
-        int end = response.indexOf("\"", start + 1);
-        String sha = response.substring(start, end);
-        https.put(String.format("/repos/%s/%s/contents/%s",
+        String fileName = content.getFileName();
+        https.send("PUT", String.format("/repos/%s/%s/contents/%s",
             this.username, this.repositoryName, fileName),
-            new String[][]{
-                {"path", fileName},
-                {"message", "Updating"},
-                {"content", encodedContent},
-                {"sha", sha}
-            });
+            RequestBody.json(json -> json.beginObject()
+                .name("path").value(fileName)
+                .name("message").value("Updating")
+                .name("content").base64Value(content)
+                .name("sha").value(sha)
+                .endObject()));
     }
 
     /**
-     * Attempts to create a file in the repository with several retries. Assumes
-     * the repository already exsits.
+     * Attempts to submit a file to the repository, creating it or updating it
+     * if it already exists. Assumes the repository already exsits. Failed
+     * requests are retried by the HttpsService.
      *
-     * @param fileName the name of the file to update.
-     * @param encodedContent the contents of the file encoded in Base64.
-     * @param retries the number of retries if the connection fails with a 409.
+     * @param content the file to submit.
+     * @throws IOException if the file could not be submitted.
      */
-    private void createWithRetries(String fileName, String encodedContent,
-        int retries) throws IOException {
+    private void pushChanges(FileContent content) throws IOException {
         try {
-            createFile(fileName, encodedContent);
-        } catch (IOException e) {
-            if ((e.getMessage().contains("409") || e.getMessage().contains("500")) && retries > 0) {
-                createWithRetries(fileName, encodedContent, retries - 1);
+            createFile(content);
+        } catch (HttpStatusException e) {
+            if (e.getStatusCode() == 422) {
+                updateFile(content);
             } else {
                 throw e;
             }
@@ -194,69 +461,564 @@ public class GitHubSubmitter {
     }
 
     /**
-     * Attempts to update a file to the repository with several retries. Assumes
-     * the repository already exsits.
+     * Attempts to submit files to the repository. Assumes the repository
+     * already exists. Files over the large file threshold that have changed
+     * are left until the rest have been pushed, and are then uploaded as
+     * blobs and committed together.
      *
-     * @param fileName the name of the file to update.
-     * @param encodedContent the contents of the file encoded in Base64.
-     * @param retries the number of retries if the connection fails with a 409.
+     * @return false in the event of authentication failure or not all files
+     * were able to be submitted.
+     * @throws FileSubmissionException if any of the files could not be
+     * submitted. Every file is attempted before this is thrown.
      */
-    private void updateWithRetries(String fileName, String encodedContent,
-        int retries) throws IOException {
-        try {
-            updateFile(fileName, encodedContent);
-        } catch (IOException e) {
-            if ((e.getMessage().contains("409") || e.getMessage().contains("500")) && retries > 0) {
-                updateWithRetries(fileName, encodedContent, retries - 1);
+    public boolean addFiles() throws IOException {
+        if (singleCommit) {
+            return commitFiles();
+        }
+        SubmissionPlan plan = planChanges();
+        List<String> small = new ArrayList<>();
+        Map<String, String> large = new LinkedHashMap<>();
+        List<String> changed = new ArrayList<>();
+        for (String fileName : files()) {
+            String sha = plan.getLocalSha(fileName);
+            boolean unchanged = sha.equals(pushedSha(fileName, plan));
+            if (Files.size(this.directory.resolve(fileName))
+                > this.largeFileThreshold && !unchanged) {
+                large.put(fileName, sha);
             } else {
+                small.add(fileName);
+            }
+            if (!unchanged) {
+                changed.add(fileName);
+            }
+        }
+        reportStarting(changed);
+        List<String> submitted = new ArrayList<>(small);
+        Map<String, IOException> failures = new LinkedHashMap<>();
+        try {
+            try {
+                forEachFile(small.toArray(new String[small.size()]),
+                    fileName -> {
+                        long start = System.nanoTime();
+                        FileContent content = content(fileName);
+                        submitFile(content, plan);
+                        recordFile(content, start);
+                        reportFinished(fileName);
+                        return null;
+                    });
+            } catch (FileSubmissionException e) {
+                submitted = new ArrayList<>(e.getSubmitted());
+                failures.putAll(e.getFailures());
+            }
+            try {
+                commit(large, false);
+                submitted.addAll(large.keySet());
+            } catch (FileSubmissionException e) {
+                submitted.addAll(e.getSubmitted());
+                failures.putAll(e.getFailures());
+            } catch (IOException e) {
+                if (failures.isEmpty()) {
+                    throw e;
+                }
+                for (String fileName : large.keySet()) {
+                    failures.put(fileName, e);
+                }
+            }
+        } finally {
+            saveManifest();
+        }
+        if (!failures.isEmpty()) {
+            throw new FileSubmissionException(submitted, failures);
+        }
+        return true;
+    }
+
+    /**
+     * Works out which files have to be added, which modified, and which are
+     * already up to date, by fetching the branch's whole tree in one request
+     * and comparing it with the local files.
+     *
+     * @return the plan.
+     * @throws IOException if a file could not be read, or the tree could not
+     * be fetched.
+     */
+    public SubmissionPlan planChanges() throws IOException {
+        String[] fileNames = files();
+        List<String> shas = localShas();
+        Map<String, String> localShas = new LinkedHashMap<>();
+        for (int i = 0; i < fileNames.length; i++) {
+            localShas.put(fileNames[i], shas.get(i));
+        }
+        String repoUrl = String.format("/repos/%s/%s", this.username,
+            this.repositoryName);
+        String branch = https.send("GET", repoUrl, null,
+            ResponseHandler.field("default_branch"));
+        Map<String, String> remoteShas = new HashMap<>();
+        boolean complete;
+        try {
+            complete = https.send("GET", repoUrl + "/git/trees/" + branch
+                + "?recursive=1", null, in -> readTree(in, remoteShas));
+        } catch (HttpStatusException e) {
+            // An empty repository has no branch, and so no tree.
+            if (!HttpStatusException.hasStatus(e, 409, 404)) {
                 throw e;
             }
+            remoteShas.clear();
+            complete = true;
         }
+        return new SubmissionPlan(localShas, remoteShas, complete);
     }
 
     /**
-     * Attempts to submit a file to the repository with several retries. Assumes
-     * the repository already exsits.
+     * Reads a recursive tree listing.
+     *
+     * @param in the response listing the tree.
+     * @param blobs where to put the SHA of every file in the tree, by path.
+     * @return whether the listing was complete, rather than truncated.
+     * @throws IOException if the listing could not be read.
+     */
+    private static boolean readTree(InputStream in, Map<String, String> blobs)
+        throws IOException {
+        boolean complete = true;
+        JsonReader json = new JsonReader(in);
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (name.equals("tree")) {
+                json.beginArray();
+                while (json.hasNext()) {
+                    Map<String, String> entry = json.readObject("path",
+                        "type", "sha");
+                    if ("blob".equals(entry.get("type"))) {
+                        blobs.put(entry.get("path"), entry.get("sha"));
+                    }
+                }
+                json.endArray();
+            } else if (name.equals("truncated")) {
+                complete = !"true".equals(json.nextString());
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return complete;
+    }
+
+    /**
+     * Submits a single file through the contents API, unless the plan shows
+     * it is already up to date. Files the plan shows are in the repository
+     * are updated straight away, and files it shows are not are created.
+     *
+     * @param content the file to submit.
+     * @param plan the plan for the submission.
+     * @throws IOException if the file could not be read or submitted.
+     */
+    private void submitFile(FileContent content, SubmissionPlan plan)
+        throws IOException {
+        String fileName = content.getFileName();
+        String sha = plan.getLocalSha(fileName);
+        String pushed = pushedSha(fileName, plan);
+        if (sha.equals(pushed)) {
+            recordPushed(fileName, sha);
+            return;
+        }
+        boolean updated = false;
+        if (pushed != null) {
+            try {
+                updateFile(content, pushed);
+                updated = true;
+            } catch (HttpStatusException e) {
+                // The repository was changed some other way since the plan
+                // was made, so fall back to asking the server what is there.
+                if (!HttpStatusException.hasStatus(e, 409, 422, 404)) {
+                    throw e;
+                }
+            }
+        }
+        if (!updated) {
+            pushChanges(content);
+        }
+        recordPushed(fileName, sha);
+    }
+
+    /**
+     * Finds what a file is in the repository, from the plan if it knows and
+     * otherwise from what was last pushed.
+     *
+     * @param fileName the name of the file in the repository.
+     * @param plan the plan for the submission.
+     * @return the blob SHA-1 of the file in the repository, or null if it is
+     * not known to be there.
+     */
+    private String pushedSha(String fileName, SubmissionPlan plan) {
+        return plan.isKnown(fileName) ? plan.getRemoteSha(fileName)
+            : lastPushed(fileName);
+    }
+
+    /**
+     * Finds what a file was when it was last pushed, by a run that was cut
+     * off or else by the last run that finished.
+     *
+     * @param fileName the name of the file in the repository.
+     * @return the blob SHA-1 of what was pushed, or null if it is not known
+     * to have been pushed.
+     */
+    private String lastPushed(String fileName) {
+        String pushed = null;
+        if (this.journal != null) {
+            pushed = this.journal.getSha(fileName);
+        }
+        if (pushed == null && this.manifest != null) {
+            pushed = this.manifest.getSha(fileName);
+        }
+        return pushed;
+    }
+
+    /**
+     * Records that a file was pushed, in the journal and the manifest.
+     *
+     * @param fileName the name of the file in the repository.
+     * @param sha the blob SHA-1 of what was pushed.
+     */
+    private void recordPushed(String fileName, String sha) {
+        if (this.manifest != null) {
+            this.manifest.setSha(fileName, sha);
+        }
+        if (this.journal != null) {
+            this.journal.recordFile(fileName, sha);
+        }
+    }
+
+    /**
+     * Records how long a file took to submit, if metrics are being kept.
+     *
+     * @param content the file.
+     * @param start when the file started, from System.nanoTime().
+     */
+    private void recordFile(FileContent content, long start) {
+        if (this.metrics != null) {
+            this.metrics.recordFile(content.getFileName(), content.getSize(),
+                System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Tells the progress, if there is one, which files are about to be
+     * pushed.
+     *
+     * @param fileNames the names of the files.
+     * @throws IOException if the size of a file could not be read.
+     */
+    private void reportStarting(Collection<String> fileNames)
+        throws IOException {
+        if (this.progress == null) {
+            return;
+        }
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        for (String fileName : fileNames) {
+            sizes.put(fileName, Files.size(this.directory.resolve(fileName)));
+        }
+        this.progress.starting(sizes);
+    }
+
+    /**
+     * Tells the progress, if there is one, that a file was pushed.
      *
      * @param fileName the name of the file.
-     * @param encodedContent the contents of the file encoded in Base64.
-     * @param retries the number of retries if the connection fails with a 409.
      */
-    private void pushChangesWithRetries(String fileName, String encodedContent,
-        int retries) throws IOException {
+    private void reportFinished(String fileName) {
+        if (this.progress != null) {
+            this.progress.finished(fileName);
+        }
+    }
+
+    /**
+     * Writes the manifest to disk, if there is one.
+     *
+     * @throws IOException if the manifest could not be written.
+     */
+    private void saveManifest() throws IOException {
+        if (this.manifest != null) {
+            this.manifest.save();
+        }
+    }
+
+    /**
+     * Runs a task for each of the given files, with up to this.concurrency
+     * of them running at once.
+     *
+     * @param files the names of the files to run the task on.
+     * @param task the task to run.
+     * @return the result of the task for each file, in the same order.
+     * @throws FileSubmissionException if the task failed for any of the
+     * files. The task is still run for all of the others.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    private <T> List<T> forEachFile(String[] files, FileTask<T> task)
+        throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(this.concurrency, files.length)));
         try {
-            createWithRetries(fileName, encodedContent, RETRIES);
-        } catch (IOException e) {
-            if (e.getMessage().contains("422")) {
-                updateWithRetries(fileName, encodedContent, RETRIES);
-            } else {
-                throw e;
+            List<Future<T>> futures = new ArrayList<>();
+            for (String fileName : files) {
+                futures.add(pool.submit(() -> task.run(fileName)));
+            }
+            List<T> results = new ArrayList<>();
+            List<String> submitted = new ArrayList<>();
+            Map<String, IOException> failures = new LinkedHashMap<>();
+            for (int i = 0; i < files.length; i++) {
+                try {
+                    results.add(futures.get(i).get());
+                    submitted.add(files[i]);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        failures.put(files[i], (IOException) e.getCause());
+                    } else if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    } else {
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+            }
+            if (!failures.isEmpty()) {
+                throw new FileSubmissionException(submitted, failures);
             }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while submitting "
+                + "files.");
+        } finally {
+            pool.shutdownNow();
         }
     }
 
     /**
-     * Attempts to submit files to the repository. Assumes the repository
-     * already exists.
+     * Some piece of work done on a single file.
+     *
+     * @param <T> the result of the work.
+     */
+    private interface FileTask<T> {
+        /**
+         * Does the work for a file.
+         *
+         * @param fileName the name of the file.
+         * @return the result of the work.
+         * @throws IOException if the work could not be done.
+         */
+        T run(String fileName) throws IOException;
+    }
+
+    /**
+     * Attempts to submit every file to the repository as a single commit. Text
+     * files are sent inline with the new tree, and any other files are
+     * uploaded as blobs first, so the branch only moves once no matter how
+     * many files are submitted. Nothing is sent at all if the journal or
+     * manifest shows no files changed. Otherwise the files are compared with
+     * the branch's tree, and only those that differ from it are committed.
+     * Blobs the journal shows were uploaded by a run that was cut off are not
+     * uploaded again. Assumes the repository already exists.
      *
      * @return false in the event of authentication failure or not all files
      * were able to be submitted.
+     * @throws IOException if there was a connection issue or an authentication
+     * issue, or the branch was moved by someone else during the submission.
      */
-    public boolean addFiles() throws IOException {
+    public boolean commitFiles() throws IOException {
+        String[] fileNames = files();
+        List<String> shas = localShas();
+        boolean maybeChanged = false;
+        for (int i = 0; i < fileNames.length && !maybeChanged; i++) {
+            maybeChanged = !shas.get(i).equals(lastPushed(fileNames[i]));
+        }
+        if (!maybeChanged) {
+            return true;
+        }
+        // Without a manifest nothing is known to be pushed, so the tree is
+        // what keeps unchanged files out of the commit.
+        SubmissionPlan plan = planChanges();
+        Map<String, String> changed = new LinkedHashMap<>();
         for (int i = 0; i < fileNames.length; i++) {
-            FileInputStream file = new FileInputStream(new File(fileNames[i]));
-            ArrayList<Byte> fileData = new ArrayList<>();
-            while (file.available() > 0) {
-                fileData.add((byte) file.read());
+            if (!shas.get(i).equals(pushedSha(fileNames[i], plan))) {
+                changed.put(fileNames[i], shas.get(i));
             }
-            byte[] bytes = new byte[fileData.size()];
-            for (int j = 0; j < fileData.size(); j++) {
-                bytes[j] = fileData.get(j);
+        }
+        if (changed.isEmpty()) {
+            for (int i = 0; i < fileNames.length; i++) {
+                recordPushed(fileNames[i], shas.get(i));
             }
-            String encodedContent = new String(Base64.getEncoder()
-                .encode(bytes));
-            pushChangesWithRetries(fileNames[i], encodedContent, RETRIES);
+            saveManifest();
+            return true;
+        }
+        reportStarting(changed.keySet());
+        commit(changed, true);
+        for (int i = 0; i < fileNames.length; i++) {
+            recordPushed(fileNames[i], shas.get(i));
         }
+        saveManifest();
         return true;
     }
+
+    /**
+     * Commits files through the Git Data API, moving the branch once for all
+     * of them.
+     *
+     * @param changedShas the blob SHA-1 of each file to commit, by name.
+     * @param inline whether small text files may be sent inline with the
+     * tree rather than uploaded as blobs.
+     * @throws IOException if there was a connection issue or an authentication
+     * issue, or the branch was moved by someone else during the commit.
+     */
+    private void commit(Map<String, String> changedShas, boolean inline)
+        throws IOException {
+        if (changedShas.isEmpty()) {
+            return;
+        }
+        String[] changedFiles = changedShas.keySet().toArray(
+            new String[changedShas.size()]);
+        String repoUrl = String.format("/repos/%s/%s", this.username,
+            this.repositoryName);
+        String branch = https.send("GET", repoUrl, null,
+            ResponseHandler.field("default_branch"));
+        String head = getHeadCommit(repoUrl, branch);
+        if (head == null) {
+            // The Git Data API refuses to touch an empty repository, so the
+            // first file goes through the contents API to create the branch.
+            createFile(content(changedFiles[0]));
+            head = getHeadCommit(repoUrl, branch);
+        }
+        String baseTree = https.send("GET", repoUrl + "/git/commits/" + head,
+            null, ResponseHandler.field("tree.sha"));
+
+        String blobUrl = repoUrl + "/git/blobs";
+        List<String> blobs = forEachFile(changedFiles,
+            fileName -> uploadBlob(blobUrl, fileName,
+                changedShas.get(fileName), inline));
+        String treeSha = https.send("POST", repoUrl + "/git/trees",
+            RequestBody.json(json -> {
+                json.beginObject().name("base_tree").value(baseTree)
+                    .name("tree").beginArray();
+                for (int i = 0; i < changedFiles.length; i++) {
+                    json.beginObject()
+                        .name("path").value(changedFiles[i])
+                        .name("mode").value("100644")
+                        .name("type").value("blob");
+                    if (blobs.get(i) == null) {
+                        json.name("content")
+                            .textValue(content(changedFiles[i]));
+                    } else {
+                        json.name("sha").value(blobs.get(i));
+                    }
+                    json.endObject();
+                }
+                json.endArray().endObject();
+            }), ResponseHandler.field("sha"));
+
+        String parent = head;
+        String newCommit = null;
+        for (int attempt = 1;; attempt++) {
+            try {
+                if (newCommit == null) {
+                    newCommit = https.send("POST", repoUrl + "/git/commits",
+                        RequestBody.json(json -> json.beginObject()
+                            .name("message").value(COMMIT_MESSAGE)
+                            .name("tree").value(treeSha)
+                            .name("parents").beginArray().value(parent)
+                            .endArray().endObject()),
+                        ResponseHandler.field("sha"));
+                }
+                String commitSha = newCommit;
+                https.send("PATCH", repoUrl + "/git/refs/heads/" + branch,
+                    RequestBody.json(json -> json.beginObject()
+                        .name("sha").value(commitSha)
+                        .name("force").value(false)
+                        .endObject()));
+                break;
+            } catch (IOException e) {
+                // Neither request is safe to send twice, so where the branch
+                // is now is read back before trying again. A conflict means
+                // the branch moved, which reading it back sorts out too.
+                if (attempt >= RECOVERY_ATTEMPTS
+                    || !(RetryPolicy.isTransient(e)
+                        || HttpStatusException.hasStatus(e, 409))) {
+                    throw e;
+                }
+                String now = getHeadCommit(repoUrl, branch);
+                if (now != null && now.equals(newCommit)) {
+                    break;
+                } else if (!parent.equals(now)) {
+                    // Someone else moved the branch.
+                    throw e;
+                }
+            }
+        }
+        for (String fileName : changedFiles) {
+            recordPushed(fileName, changedShas.get(fileName));
+            reportFinished(fileName);
+        }
+    }
+
+    /**
+     * Uploads a file as a blob, unless it is a small text file, in which case
+     * it is cheaper to send it inline with the tree. The file is streamed
+     * from disk, so only a fixed-size buffer of it is ever in memory.
+     *
+     * @param blobUrl the url to upload blobs to.
+     * @param fileName the name of the file.
+     * @param blobSha the blob SHA-1 of the file. The blob is not uploaded
+     * again if the journal shows it already was.
+     * @param inline whether the file may be sent inline instead.
+     * @return the SHA of the uploaded blob, or null if the file should be
+     * sent inline.
+     * @throws IOException if the file could not be read or uploaded.
+     */
+    private String uploadBlob(String blobUrl, String fileName, String blobSha,
+        boolean inline) throws IOException {
+        long start = System.nanoTime();
+        FileContent content = content(fileName);
+        if (inline && content.getSize() <= this.largeFileThreshold
+            && content.isText()) {
+            return null;
+        }
+        if (this.journal != null && this.journal.hasBlob(blobSha)) {
+            return blobSha;
+        }
+        RequestBody body = RequestBody.json(json -> json.beginObject()
+            .name("encoding").value("base64")
+            .name("content").base64Value(content)
+            .endObject());
+        if (this.progress != null) {
+            body = RequestBody.withProgress(body, fileName, this.progress);
+        }
+        String sha = https.send("POST", blobUrl, body,
+            ResponseHandler.field("sha"));
+        recordFile(content, start);
+        reportFinished(fileName);
+        if (this.journal != null) {
+            this.journal.recordBlob(sha);
+        }
+        return sha;
+    }
+
+    /**
+     * Finds the commit that a branch currently points to.
+     *
+     * @param repoUrl the url of the repository.
+     * @param branch the name of the branch.
+     * @return the sha of the commit, or null if the repository is empty.
+     * @throws IOException if there was a connection issue or an authentication
+     * issue.
+     */
+    private String getHeadCommit(String repoUrl, String branch)
+        throws IOException {
+        try {
+            return https.send("GET", repoUrl + "/git/ref/heads/" + branch,
+                null, ResponseHandler.field("object.sha"));
+        } catch (HttpStatusException e) {
+            if (HttpStatusException.hasStatus(e, 409, 404)) {
+                return null;
+            }
+            throw e;
+        }
+    }
 }
@@ -0,0 +1,325 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A cache on disk of GET responses that came with an ETag or Last-Modified
+ * header. The cached validators are sent back with the next GET of the same
+ * url, and when the server answers 304 Not Modified the response is read
+ * from disk instead. GitHub does not count 304s against the rate limit.
+ *
+ * Each response is kept in a single file holding the url, the validators and
+ * the body, which is only moved into place once it has been read completely.
+ * Once the cache holds more than its limit, the least recently used
+ * responses are deleted.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class HttpCache {
+    private static final String DIRECTORY = ".github-submit";
+    private static final String SUFFIX = ".response";
+    private Path directory;
+    private long maxBytes;
+
+    /**
+     * Public constructor.
+     *
+     * @param directory the directory to keep responses in.
+     * @param maxBytes the most bytes to keep. No single response bigger than
+     * a quarter of this is kept.
+     * @throws IOException if the directory could not be created.
+     */
+    public HttpCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Opens the cache kept in the user's home directory, next to the
+     * submission manifests.
+     *
+     * @param maxBytes the most bytes to keep.
+     * @return the cache.
+     * @throws IOException if the directory could not be created.
+     */
+    public static HttpCache inHomeDirectory(long maxBytes) throws IOException {
+        return new HttpCache(Paths.get(System.getProperty("user.home"),
+            DIRECTORY, "cache"), maxBytes);
+    }
+
+    /**
+     * Looks up the cached response for a url.
+     *
+     * @param key the url, along with anything else the response depends on,
+     * such as who asked for it.
+     * @return the cached response, or null if there is none.
+     */
+    public Entry get(String key) {
+        Path file = fileFor(key);
+        try (DataInputStream in = new DataInputStream(
+            Files.newInputStream(file))) {
+            if (!in.readUTF().equals(key)) {
+                return null;
+            }
+            Entry entry = new Entry(file, in.readUTF(), in.readUTF());
+            // Marks the response as recently used, so it is evicted last.
+            Files.setLastModifiedTime(file,
+                FileTime.fromMillis(System.currentTimeMillis()));
+            return entry;
+        } catch (IOException e) {
+            // Missing and unreadable responses are both just not cached.
+            return null;
+        }
+    }
+
+    /**
+     * Caches a response as it is read. The response is only kept if it is
+     * read to the end before the stream is closed.
+     *
+     * @param key the url, along with anything else the response depends on.
+     * @param etag the ETag of the response, or null.
+     * @param lastModified the Last-Modified date of the response, or null.
+     * @param in the body of the response.
+     * @return a stream to read the body from instead of in.
+     * @throws IOException if the response could not be written to disk.
+     */
+    public InputStream store(String key, String etag, String lastModified,
+        InputStream in) throws IOException {
+        Path temp = Files.createTempFile(this.directory, "response", ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(temp)));
+        out.writeUTF(key);
+        out.writeUTF(etag == null ? "" : etag);
+        out.writeUTF(lastModified == null ? "" : lastModified);
+        return new CachingInputStream(in, out, temp, fileFor(key));
+    }
+
+    /**
+     * Deletes the least recently used responses until the cache is back
+     * under its limit.
+     *
+     * @throws IOException if the directory could not be read.
+     */
+    private synchronized void evict() throws IOException {
+        List<Path> files = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> responses = Files.newDirectoryStream(
+            this.directory, "*" + SUFFIX)) {
+            for (Path file : responses) {
+                files.add(file);
+                total += Files.size(file);
+            }
+        }
+        if (total <= this.maxBytes) {
+            return;
+        }
+        List<FileTime> times = new ArrayList<>();
+        for (Path file : files) {
+            times.add(Files.getLastModifiedTime(file));
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            order.add(i);
+        }
+        Collections.sort(order, (a, b) -> times.get(a).compareTo(
+            times.get(b)));
+        for (int i : order) {
+            if (total <= this.maxBytes) {
+                return;
+            }
+            try {
+                total -= Files.size(files.get(i));
+                Files.delete(files.get(i));
+            } catch (NoSuchFileException e) {
+                // Already evicted by another process.
+                continue;
+            }
+        }
+    }
+
+    /**
+     * @param key the url, along with anything else the response depends on.
+     * @return the file the response for key is kept in.
+     */
+    private Path fileFor(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(key.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return this.directory.resolve(hex + SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available.", e);
+        }
+    }
+
+    /**
+     * A cached response.
+     */
+    public static class Entry {
+        private Path file;
+        private String etag;
+        private String lastModified;
+
+        /**
+         * @param file the file the response is kept in.
+         * @param etag the ETag of the response, or an empty string.
+         * @param lastModified the Last-Modified date, or an empty string.
+         */
+        private Entry(Path file, String etag, String lastModified) {
+            this.file = file;
+            this.etag = etag.isEmpty() ? null : etag;
+            this.lastModified = lastModified.isEmpty() ? null : lastModified;
+        }
+
+        /**
+         * @return the ETag of the response, or null if it had none.
+         */
+        public String getETag() {
+            return this.etag;
+        }
+
+        /**
+         * @return the Last-Modified date of the response, or null if it had
+         * none.
+         */
+        public String getLastModified() {
+            return this.lastModified;
+        }
+
+        /**
+         * Opens the body of the response.
+         *
+         * @return the body.
+         * @throws IOException if the response is no longer cached.
+         */
+        public InputStream open() throws IOException {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(this.file)));
+            in.readUTF();
+            in.readUTF();
+            in.readUTF();
+            return in;
+        }
+    }
+
+    /**
+     * Copies a response to disk as it is read, and keeps the copy if the
+     * response was read to the end.
+     */
+    private class CachingInputStream extends FilterInputStream {
+        private OutputStream out;
+        private Path temp;
+        private Path target;
+        private long written;
+        private boolean finished;
+
+        /**
+         * @param in the body of the response.
+         * @param out where to copy the response.
+         * @param temp the file out writes to.
+         * @param target where to move temp once it is complete.
+         */
+        CachingInputStream(InputStream in, OutputStream out, Path temp,
+            Path target) {
+            super(in);
+            this.out = out;
+            this.temp = temp;
+            this.target = target;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                this.finished = true;
+            } else {
+                copy(new byte[] {(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read < 0) {
+                this.finished = true;
+            } else {
+                copy(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes would be missing from the copy.
+            byte[] skipped = new byte[(int) Math.min(n, 8192)];
+            int read = read(skipped, 0, skipped.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                if (this.out != null) {
+                    this.out.close();
+                    if (this.finished) {
+                        Files.move(this.temp, this.target,
+                            StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                        evict();
+                    } else {
+                        Files.deleteIfExists(this.temp);
+                    }
+                    this.out = null;
+                }
+            }
+        }
+
+        /**
+         * Copies what was read, unless the response has turned out to be too
+         * big to keep.
+         *
+         * @param b the bytes read.
+         * @param off where they start.
+         * @param len how many there are.
+         * @throws IOException if the copy could not be written.
+         */
+        private void copy(byte[] b, int off, int len) throws IOException {
+            if (this.out == null) {
+                return;
+            }
+            this.written += len;
+            if (this.written > maxBytes / 4) {
+                this.out.close();
+                Files.deleteIfExists(this.temp);
+                this.out = null;
+                return;
+            }
+            this.out.write(b, off, len);
+        }
+    }
+}
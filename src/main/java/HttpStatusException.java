@@ -0,0 +1,98 @@
+import java.io.IOException;
+
+/**
+ * Thrown when the server responds to a request with an error status. Carries
+ * the status code and the headers GitHub uses to say when to try again, so
+ * callers never have to dig the status out of the message.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class HttpStatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+    private int statusCode;
+    private long retryAfterSeconds;
+    private long rateLimitRemaining;
+    private long rateLimitReset;
+
+    /**
+     * Public constructor.
+     *
+     * @param statusCode the HTTP status code of the response.
+     * @param url the url the request was sent to.
+     * @param retryAfterSeconds the Retry-After header, or -1 if missing.
+     * @param rateLimitRemaining the X-RateLimit-Remaining header, or -1 if
+     * missing.
+     * @param rateLimitReset the X-RateLimit-Reset header in seconds since the
+     * epoch, or -1 if missing.
+     */
+    public HttpStatusException(int statusCode, String url,
+        long retryAfterSeconds, long rateLimitRemaining, long rateLimitReset) {
+        // Worded the same as HttpURLConnection's own errors.
+        super("Server returned HTTP response code: " + statusCode
+            + " for URL: " + url);
+        this.statusCode = statusCode;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.rateLimitRemaining = rateLimitRemaining;
+        this.rateLimitReset = rateLimitReset;
+    }
+
+    /**
+     * Checks whether an exception is an error response with one of some
+     * status codes.
+     *
+     * @param e the exception to check.
+     * @param statusCodes the status codes to look for.
+     * @return whether e is an HttpStatusException with one of statusCodes.
+     */
+    public static boolean hasStatus(Throwable e, int... statusCodes) {
+        if (e instanceof HttpStatusException) {
+            for (int statusCode : statusCodes) {
+                if (((HttpStatusException) e).statusCode == statusCode) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the HTTP status code of the response.
+     */
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    /**
+     * @return how many seconds the server asked to wait before retrying, or
+     * -1 if it did not say.
+     */
+    public long getRetryAfterSeconds() {
+        return this.retryAfterSeconds;
+    }
+
+    /**
+     * @return how many requests are left in the rate limit window, or -1 if
+     * the server did not say.
+     */
+    public long getRateLimitRemaining() {
+        return this.rateLimitRemaining;
+    }
+
+    /**
+     * @return when the rate limit window resets in seconds since the epoch,
+     * or -1 if the server did not say.
+     */
+    public long getRateLimitReset() {
+        return this.rateLimitReset;
+    }
+
+    /**
+     * @return whether the server turned the request away for going over a
+     * rate limit, rather than because of the request itself.
+     */
+    public boolean isRateLimited() {
+        return this.statusCode == 429 || (this.statusCode == 403
+            && (this.retryAfterSeconds >= 0 || this.rateLimitRemaining == 0));
+    }
+}
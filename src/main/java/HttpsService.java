@@ -50,4 +50,52 @@ public interface HttpsService {
     String put(String url, String[][] properties)
         throws IllegalArgumentException, IOException;
 
+    /**
+     * Sends an HTTPS request whose body has already been formatted as JSON.
+     * Unlike post and put, this can send bodies that are not flat, such as the
+     * trees and commits of the Git Data API.
+     *
+     * @param verb the kind of request (e.g POST, PATCH, etc.).
+     * @param url The url to send the request to.
+     * @param json the body of the request formatted as JSON.
+     * @return a String containing the response from the server.
+     * @throws IOException when something goes wrong connecting to the server.
+     */
+    default String send(String verb, String url, String json)
+        throws IOException {
+        return send(verb, url, RequestBody.of(json));
+    }
+
+    /**
+     * Sends an HTTPS request whose body is written straight to the connection
+     * as it is sent.
+     *
+     * @param verb the kind of request (e.g POST, PUT, PATCH, etc.).
+     * @param url The url to send the request to.
+     * @param body the body of the request, or null for no body.
+     * @return a String containing the response from the server.
+     * @throws IOException when something goes wrong connecting to the server,
+     * or the body could not be written.
+     */
+    default String send(String verb, String url, RequestBody body)
+        throws IOException {
+        return send(verb, url, body, ResponseHandler.string());
+    }
+
+    /**
+     * Sends an HTTPS request, handing the response to handler as it arrives
+     * rather than reading it into a String.
+     *
+     * @param verb the kind of request (e.g GET, POST, PUT, PATCH, etc.).
+     * @param url The url to send the request to.
+     * @param body the body of the request, or null for no body.
+     * @param handler reads the response.
+     * @param <T> what the response is read into.
+     * @return whatever handler read the response into.
+     * @throws IOException when something goes wrong connecting to the server,
+     * the body could not be written, or the response could not be read.
+     */
+    <T> T send(String verb, String url, RequestBody body,
+        ResponseHandler<T> handler) throws IOException;
+
 }
@@ -0,0 +1,458 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads JSON one token at a time from a stream, so that only the values that
+ * are actually needed are ever turned into Strings. Everything else is
+ * skipped over as it is read. This is lenient about commas and colons, since
+ * it only ever reads responses from the server.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class JsonReader {
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private Reader in;
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private boolean[] objects;
+    private boolean[] nameNext;
+    private int depth;
+
+    /**
+     * The kinds of tokens in JSON.
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING,
+        LITERAL, END
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param in the stream to read UTF-8 JSON from.
+     */
+    public JsonReader(InputStream in) {
+        this.in = new InputStreamReader(in, StandardCharsets.UTF_8);
+        this.buffer = new char[BUFFER_SIZE];
+        this.objects = new boolean[16];
+        this.nameNext = new boolean[16];
+    }
+
+    /**
+     * Reads the string values at some paths out of a JSON object. Paths are
+     * property names separated by dots, such as tree.sha. Numbers and
+     * booleans are returned as Strings too. Anything else is skipped.
+     *
+     * @param in the stream to read the object from.
+     * @param paths the paths to read.
+     * @return the values found, keyed by path. Paths that were not found are
+     * left out.
+     * @throws IOException if the stream could not be read or is not JSON.
+     */
+    public static Map<String, String> readFields(InputStream in,
+        String... paths) throws IOException {
+        JsonReader json = new JsonReader(in);
+        if (json.peek() != Token.BEGIN_OBJECT) {
+            return new HashMap<>();
+        }
+        return json.readObject(paths);
+    }
+
+    /**
+     * Consumes the next object, keeping only the string values at some
+     * paths. This is readFields for an object in the middle of the stream,
+     * such as an element of an array.
+     *
+     * @param paths the dot separated paths to read.
+     * @return the values found, keyed by path.
+     * @throws IOException if the next value is not an object.
+     */
+    public Map<String, String> readObject(String... paths) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        readFields("", Arrays.asList(paths), fields);
+        return fields;
+    }
+
+    /**
+     * Reads wanted paths out of the object that is next in the stream.
+     *
+     * @param prefix the path of this object followed by a dot, or nothing if
+     * this is the outermost object.
+     * @param paths the paths wanted.
+     * @param fields where to put the values found.
+     * @throws IOException if the stream could not be read or is not JSON.
+     */
+    private void readFields(String prefix, List<String> paths,
+        Map<String, String> fields) throws IOException {
+        beginObject();
+        while (hasNext()) {
+            String path = prefix + nextName();
+            Token token = peek();
+            if ((token == Token.STRING || token == Token.LITERAL)
+                && paths.contains(path)) {
+                fields.put(path, nextString());
+            } else if (token == Token.BEGIN_OBJECT
+                && hasPrefix(paths, path + ".")) {
+                readFields(path + ".", paths, fields);
+            } else {
+                skipValue();
+            }
+        }
+        endObject();
+    }
+
+    /**
+     * @param paths some paths.
+     * @param prefix a prefix.
+     * @return whether any of the paths start with prefix.
+     */
+    private static boolean hasPrefix(List<String> paths,
+        String prefix) {
+        for (String path : paths) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Looks at the next token without consuming it.
+     *
+     * @return the next token.
+     * @throws IOException if the stream could not be read.
+     */
+    public Token peek() throws IOException {
+        int c = skipSeparators();
+        switch (c) {
+        case -1:
+            return Token.END;
+        case '{':
+            return Token.BEGIN_OBJECT;
+        case '}':
+            return Token.END_OBJECT;
+        case '[':
+            return Token.BEGIN_ARRAY;
+        case ']':
+            return Token.END_ARRAY;
+        case '"':
+            return this.depth > 0 && this.nameNext[this.depth]
+                ? Token.NAME : Token.STRING;
+        default:
+            return Token.LITERAL;
+        }
+    }
+
+    /**
+     * @return whether the current object or array has more elements.
+     * @throws IOException if the stream could not be read.
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY
+            && token != Token.END;
+    }
+
+    /**
+     * Consumes the start of an object.
+     *
+     * @throws IOException if the next token is not the start of an object.
+     */
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        this.position++;
+        push(true);
+    }
+
+    /**
+     * Consumes the end of an object.
+     *
+     * @throws IOException if the next token is not the end of an object.
+     */
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        this.position++;
+        this.depth--;
+        afterValue();
+    }
+
+    /**
+     * Consumes the start of an array.
+     *
+     * @throws IOException if the next token is not the start of an array.
+     */
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        this.position++;
+        push(false);
+    }
+
+    /**
+     * Consumes the end of an array.
+     *
+     * @throws IOException if the next token is not the end of an array.
+     */
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        this.position++;
+        this.depth--;
+        afterValue();
+    }
+
+    /**
+     * Consumes the name of the next property in the current object.
+     *
+     * @return the name.
+     * @throws IOException if the next token is not a name.
+     */
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        String name = readString();
+        this.nameNext[this.depth] = false;
+        return name;
+    }
+
+    /**
+     * Consumes a string, number, boolean, or null value.
+     *
+     * @return the value as a String, or null for null.
+     * @throws IOException if the next token is not one of those values.
+     */
+    public String nextString() throws IOException {
+        Token token = peek();
+        String value;
+        if (token == Token.STRING) {
+            value = readString();
+        } else if (token == Token.LITERAL) {
+            value = readLiteral();
+            if (value.equals("null")) {
+                value = null;
+            }
+        } else {
+            throw new IOException("Expected a value but found " + token);
+        }
+        afterValue();
+        return value;
+    }
+
+    /**
+     * Consumes the next value without keeping any of it, including every
+     * value nested inside it.
+     *
+     * @throws IOException if the stream could not be read.
+     */
+    public void skipValue() throws IOException {
+        Token token = peek();
+        if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+            int start = this.depth;
+            do {
+                token = peek();
+                if (token == Token.BEGIN_OBJECT) {
+                    beginObject();
+                } else if (token == Token.BEGIN_ARRAY) {
+                    beginArray();
+                } else if (token == Token.END_OBJECT) {
+                    endObject();
+                } else if (token == Token.END_ARRAY) {
+                    endArray();
+                } else if (token == Token.NAME) {
+                    nextName();
+                } else if (token == Token.END) {
+                    throw new IOException("Unexpected end of JSON.");
+                } else {
+                    skipScalar(token);
+                }
+            } while (this.depth > start);
+        } else if (token == Token.NAME) {
+            nextName();
+            skipValue();
+        } else {
+            skipScalar(token);
+        }
+    }
+
+    /**
+     * Consumes a string or literal without building a String for it.
+     *
+     * @param token the kind of value being skipped.
+     * @throws IOException if the stream could not be read.
+     */
+    private void skipScalar(Token token) throws IOException {
+        if (token == Token.STRING) {
+            this.position++;
+            int c;
+            while ((c = read()) != '"') {
+                if (c == '\\') {
+                    read();
+                } else if (c == -1) {
+                    throw new IOException("Unterminated string in JSON.");
+                }
+            }
+        } else {
+            readLiteral();
+        }
+        afterValue();
+    }
+
+    /**
+     * Makes sure the next token is of some kind.
+     *
+     * @param expected the kind of token expected.
+     * @throws IOException if the next token is something else.
+     */
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw new IOException("Expected " + expected + " but found "
+                + token);
+        }
+    }
+
+    /**
+     * Starts a new object or array.
+     *
+     * @param object whether it is an object.
+     */
+    private void push(boolean object) {
+        this.depth++;
+        if (this.depth == this.nameNext.length) {
+            this.objects = Arrays.copyOf(this.objects, this.depth * 2);
+            this.nameNext = Arrays.copyOf(this.nameNext, this.depth * 2);
+        }
+        this.objects[this.depth] = object;
+        this.nameNext[this.depth] = object;
+    }
+
+    /**
+     * Records that a value was consumed, so that a name comes next if in an
+     * object.
+     */
+    private void afterValue() {
+        if (this.depth > 0 && this.objects[this.depth]) {
+            this.nameNext[this.depth] = true;
+        }
+    }
+
+    /**
+     * Reads a quoted string, unescaping it. Assumes the next character is
+     * the opening quote.
+     *
+     * @return the string.
+     * @throws IOException if the stream could not be read.
+     */
+    private String readString() throws IOException {
+        this.position++;
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return value.toString();
+            } else if (c == -1) {
+                throw new IOException("Unterminated string in JSON.");
+            } else if (c == '\\') {
+                c = read();
+                switch (c) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    char[] hex = new char[4];
+                    for (int i = 0; i < 4; i++) {
+                        hex[i] = (char) read();
+                    }
+                    value.append((char) Integer.parseInt(new String(hex), 16));
+                    break;
+                default:
+                    value.append((char) c);
+                }
+            } else {
+                value.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Reads a number, boolean, or null.
+     *
+     * @return the literal as it appears in the JSON.
+     * @throws IOException if the stream could not be read.
+     */
+    private String readLiteral() throws IOException {
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            int c = peekChar();
+            if (c == -1 || c == ',' || c == '}' || c == ']'
+                || Character.isWhitespace(c)) {
+                return value.toString();
+            }
+            value.append((char) c);
+            this.position++;
+        }
+    }
+
+    /**
+     * Skips whitespace, commas, and colons.
+     *
+     * @return the next character, which is not consumed, or -1 at the end.
+     * @throws IOException if the stream could not be read.
+     */
+    private int skipSeparators() throws IOException {
+        while (true) {
+            int c = peekChar();
+            if (c == ',' || c == ':' || Character.isWhitespace(c)) {
+                this.position++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    /**
+     * @return the next character without consuming it, or -1 at the end.
+     * @throws IOException if the stream could not be read.
+     */
+    private int peekChar() throws IOException {
+        if (this.position == this.limit) {
+            this.limit = this.in.read(this.buffer);
+            this.position = 0;
+            if (this.limit <= 0) {
+                this.limit = 0;
+                return -1;
+            }
+        }
+        return this.buffer[this.position];
+    }
+
+    /**
+     * @return the next character, or -1 at the end.
+     * @throws IOException if the stream could not be read.
+     */
+    private int read() throws IOException {
+        int c = peekChar();
+        if (c != -1) {
+            this.position++;
+        }
+        return c;
+    }
+}
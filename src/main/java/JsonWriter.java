@@ -0,0 +1,409 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes JSON straight to an output stream as UTF-8, escaping strings as it
+ * goes. Commas and colons are added automatically. Files can be written as
+ * string values without ever being held in memory, either encoded in base 64
+ * or as escaped text.
+ *
+ * A writer can also be used to measure how many bytes some JSON will take
+ * without writing it, so requests can be sent with a fixed length.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class JsonWriter {
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private OutputStream out;
+    private boolean measuring;
+    private long count;
+    private byte[] buffer;
+    private int buffered;
+    private boolean[] first;
+    private int depth;
+    private boolean afterName;
+
+    /**
+     * Some JSON that can be written to a JsonWriter.
+     */
+    public interface Content {
+        /**
+         * Writes the JSON.
+         *
+         * @param json the writer to write to.
+         * @throws IOException if the JSON could not be written.
+         */
+        void writeTo(JsonWriter json) throws IOException;
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param out the stream to write to. It is not closed by this writer.
+     */
+    public JsonWriter(OutputStream out) {
+        this(out, false);
+    }
+
+    /**
+     * Creates a writer that either writes to out or only counts bytes.
+     *
+     * @param out the stream to write to.
+     * @param measuring true to only count bytes, in which case out is unused.
+     */
+    private JsonWriter(OutputStream out, boolean measuring) {
+        this.out = out;
+        this.measuring = measuring;
+        this.buffer = measuring ? null : new byte[BUFFER_SIZE];
+        this.first = new boolean[16];
+    }
+
+    /**
+     * Finds how many bytes some JSON takes up without writing it anywhere.
+     * Base 64 values are measured without reading their files.
+     *
+     * @param content the JSON to measure.
+     * @return the length of the JSON in bytes.
+     * @throws IOException if a text value could not be read.
+     */
+    public static long measure(Content content) throws IOException {
+        JsonWriter json = new JsonWriter(null, true);
+        content.writeTo(json);
+        return json.count;
+    }
+
+    /**
+     * Formats some JSON as a String. Only meant for small JSON.
+     *
+     * @param content the JSON to format.
+     * @return the JSON as a String.
+     * @throws IOException if a text value could not be read.
+     */
+    public static String toString(Content content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(bytes);
+        content.writeTo(json);
+        json.flush();
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Starts an object.
+     *
+     * @return this writer.
+     * @throws IOException if the stream could not be written to.
+     */
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        writeByte('{');
+        push();
+        return this;
+    }
+
+    /**
+     * Ends the current object.
+     *
+     * @return this writer.
+     * @throws IOException if the stream could not be written to.
+     */
+    public JsonWriter endObject() throws IOException {
+        this.depth--;
+        writeByte('}');
+        return this;
+    }
+
+    /**
+     * Starts an array.
+     *
+     * @return this writer.
+     * @throws IOException if the stream could not be written to.
+     */
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        writeByte('[');
+        push();
+        return this;
+    }
+
+    /**
+     * Ends the current array.
+     *
+     * @return this writer.
+     * @throws IOException if the stream could not be written to.
+     */
+    public JsonWriter endArray() throws IOException {
+        this.depth--;
+        writeByte(']');
+        return this;
+    }
+
+    /**
+     * Writes the name of the next property in the current object.
+     *
+     * @param name the name of the property.
+     * @return this writer.
+     * @throws IOException if the stream could not be written to.
+     */
+    public JsonWriter name(String name) throws IOException {
+        beforeValue();
+        writeString(name);
+        writeByte(':');
+        this.afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value.
+     *
+     * @param value the value, or null to write null.
+     * @return this writer.
+     * @throws IOException if the stream could not be written to.
+     */
+    public JsonWriter value(String value) throws IOException {
+        beforeValue();
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a boolean value.
+     *
+     * @param value the value.
+     * @return this writer.
+     * @throws IOException if the stream could not be written to.
+     */
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        writeAscii(String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * Writes a number value.
+     *
+     * @param value the value.
+     * @return this writer.
+     * @throws IOException if the stream could not be written to.
+     */
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        writeAscii(String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * Writes a string value holding a file encoded in base 64. The file is
+     * streamed, so it is never held in memory all at once.
+     *
+     * @param content the file to write.
+     * @return this writer.
+     * @throws IOException if the file could not be read or the stream could
+     * not be written to.
+     */
+    public JsonWriter base64Value(FileContent content) throws IOException {
+        beforeValue();
+        writeByte('"');
+        if (this.measuring) {
+            this.count += content.getBase64Length();
+        } else {
+            flushBuffer();
+            content.writeBase64(this.out);
+        }
+        writeByte('"');
+        return this;
+    }
+
+    /**
+     * Writes a string value holding the text of a file, which must be UTF-8.
+     * The file is streamed, so it is never held in memory all at once.
+     *
+     * @param content the file to write.
+     * @return this writer.
+     * @throws IOException if the file could not be read or the stream could
+     * not be written to.
+     */
+    public JsonWriter textValue(FileContent content) throws IOException {
+        try (Reader in = content.openText()) {
+            return textValue(in);
+        }
+    }
+
+    /**
+     * Writes a string value holding everything a reader has left. The text
+     * is streamed, so it is never held in memory all at once.
+     *
+     * @param in the reader, which is not closed.
+     * @return this writer.
+     * @throws IOException if the reader could not be read or the stream
+     * could not be written to.
+     */
+    JsonWriter textValue(Reader in) throws IOException {
+        beforeValue();
+        writeByte('"');
+        char[] chars = new char[BUFFER_SIZE];
+        int length = 0;
+        int read;
+        while ((read = in.read(chars, length, chars.length - length)) >= 0) {
+            length += read;
+            // A surrogate pair split between reads is held back until its
+            // second half is read, so it is encoded as one character.
+            int end = Character.isHighSurrogate(chars[length - 1])
+                ? length - 1 : length;
+            writeEscaped(chars, 0, end);
+            if (end < length) {
+                chars[0] = chars[end];
+            }
+            length -= end;
+        }
+        writeEscaped(chars, 0, length);
+        writeByte('"');
+        return this;
+    }
+
+    /**
+     * Writes out anything still buffered. Does not close the stream.
+     *
+     * @throws IOException if the stream could not be written to.
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        if (!this.measuring) {
+            this.out.flush();
+        }
+    }
+
+    /**
+     * Adds the comma between values when one is needed.
+     *
+     * @throws IOException if the stream could not be written to.
+     */
+    private void beforeValue() throws IOException {
+        if (this.afterName) {
+            this.afterName = false;
+        } else if (this.depth > 0) {
+            if (!this.first[this.depth]) {
+                writeByte(',');
+            }
+            this.first[this.depth] = false;
+        }
+    }
+
+    /**
+     * Starts a new object or array.
+     */
+    private void push() {
+        this.depth++;
+        if (this.depth == this.first.length) {
+            this.first = Arrays.copyOf(this.first, this.depth * 2);
+        }
+        this.first[this.depth] = true;
+    }
+
+    /**
+     * Writes a quoted, escaped string.
+     *
+     * @param value the string.
+     * @throws IOException if the stream could not be written to.
+     */
+    private void writeString(String value) throws IOException {
+        writeByte('"');
+        writeEscaped(value.toCharArray(), 0, value.length());
+        writeByte('"');
+    }
+
+    /**
+     * Writes characters escaped for a JSON string, encoded as UTF-8.
+     *
+     * @param chars the characters.
+     * @param start the index of the first character to write.
+     * @param end the index after the last character to write.
+     * @throws IOException if the stream could not be written to.
+     */
+    private void writeEscaped(char[] chars, int start, int end)
+        throws IOException {
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c == '"' || c == '\\') {
+                writeByte('\\');
+                writeByte(c);
+            } else if (c == '\n') {
+                writeAscii("\\n");
+            } else if (c == '\r') {
+                writeAscii("\\r");
+            } else if (c == '\t') {
+                writeAscii("\\t");
+            } else if (c < 0x20) {
+                writeAscii("\\u00");
+                writeByte(HEX[c >> 4]);
+                writeByte(HEX[c & 0xf]);
+            } else if (c < 0x80) {
+                writeByte(c);
+            } else if (c < 0x800) {
+                writeByte(0xc0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                && Character.isLowSurrogate(chars[i + 1])) {
+                int code = Character.toCodePoint(c, chars[++i]);
+                writeByte(0xf0 | (code >> 18));
+                writeByte(0x80 | ((code >> 12) & 0x3f));
+                writeByte(0x80 | ((code >> 6) & 0x3f));
+                writeByte(0x80 | (code & 0x3f));
+            } else {
+                writeByte(0xe0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3f));
+                writeByte(0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    /**
+     * Writes an ASCII string without quoting or escaping it.
+     *
+     * @param text the string.
+     * @throws IOException if the stream could not be written to.
+     */
+    private void writeAscii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            writeByte(text.charAt(i));
+        }
+    }
+
+    /**
+     * Writes a single byte.
+     *
+     * @param b the byte.
+     * @throws IOException if the stream could not be written to.
+     */
+    private void writeByte(int b) throws IOException {
+        if (this.measuring) {
+            this.count++;
+            return;
+        }
+        if (this.buffered == this.buffer.length) {
+            flushBuffer();
+        }
+        this.buffer[this.buffered++] = (byte) b;
+    }
+
+    /**
+     * Writes out the buffer.
+     *
+     * @throws IOException if the stream could not be written to.
+     */
+    private void flushBuffer() throws IOException {
+        if (!this.measuring && this.buffered > 0) {
+            this.out.write(this.buffer, 0, this.buffered);
+            this.buffered = 0;
+        }
+    }
+}
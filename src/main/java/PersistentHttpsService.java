@@ -0,0 +1,62 @@
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * A GitHubHttpsService that keeps enough connections to the server alive
+ * between requests for every request in flight to reuse one. Every request
+ * shares one TLS context, so a connection that does have to be opened again
+ * resumes the cached TLS session rather than doing a full handshake.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class PersistentHttpsService extends GitHubHttpsService {
+    private static final int SESSION_TIMEOUT_SECONDS = 60 * 60;
+    private SSLSocketFactory socketFactory;
+
+    /**
+     * Public constructor.
+     *
+     * @param hostURL the url to the github web API.
+     * @param username the username needed to authenticate with GitHub.
+     * @param password the password needed to authenticate with GitHub.
+     * @param maxConnections the most idle connections to keep alive at once.
+     * This should be at least the number of requests made concurrently.
+     * @throws IllegalStateException if TLS is not available.
+     */
+    public PersistentHttpsService(String hostURL, String username,
+        String password, int maxConnections) {
+        super(hostURL, username, password);
+        // The JVM keeps only five idle connections to a host by default. This
+        // only takes effect if set before the first connection is made, and
+        // never overrides a value given on the command line.
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections",
+                String.valueOf(maxConnections));
+        }
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, null, null);
+            context.getClientSessionContext().setSessionTimeout(
+                SESSION_TIMEOUT_SECONDS);
+            this.socketFactory = context.getSocketFactory();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("TLS is not available.", e);
+        }
+    }
+
+    @Override
+    protected HttpURLConnection openConnection(URL url) throws IOException {
+        HttpURLConnection con = super.openConnection(url);
+        if (con instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) con).setSSLSocketFactory(this.socketFactory);
+        }
+        con.setRequestProperty("Connection", "keep-alive");
+        return con;
+    }
+}
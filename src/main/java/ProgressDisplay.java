@@ -0,0 +1,284 @@
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows how far along the files of a submission are: how many files and
+ * bytes have been pushed, how fast, how long is left, and how many requests
+ * are being retried.
+ *
+ * On a terminal the progress is a single line, redrawn in place a few times
+ * a second, and only when it changed. Anywhere else, such as when the output
+ * is piped to a file, a new line is printed every tenth of the way, whenever
+ * a request starts being retried, and every so often while nothing else is
+ * printed, so there is always some sign the submission is still going.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class ProgressDisplay implements UploadProgress, RetryListener {
+    private static final long REDRAW_MILLIS = 250;
+    private static final long QUIET_MILLIS = 30000;
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private PrintStream out;
+    private boolean interactive;
+    private ScheduledExecutorService timer;
+    private ScheduledFuture<?> redraw;
+    private Map<String, Long> sizes = new HashMap<>();
+    private Map<String, Long> sending = new HashMap<>();
+    private Set<String> done = new HashSet<>();
+    private long totalBytes;
+    private long doneBytes;
+    private int retrying;
+    private int retries;
+    private Deque<long[]> samples = new ArrayDeque<>();
+    private String lastLine = "";
+    private long lastStep = -1;
+    private int lastRetries;
+    private int lastDone;
+    private long lastPrinted;
+
+    /**
+     * Public constructor.
+     *
+     * @param out where to show the progress.
+     * @param interactive whether out is a terminal, so the progress can be
+     * redrawn in place.
+     */
+    public ProgressDisplay(PrintStream out, boolean interactive) {
+        this.out = out;
+        this.interactive = interactive;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-display");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts showing the progress, which may already be under way.
+     */
+    public synchronized void show() {
+        if (this.redraw == null) {
+            this.lastPrinted = System.nanoTime();
+            this.redraw = this.timer.scheduleAtFixedRate(this::draw, 0,
+                REDRAW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops showing the progress, drawing it one last time.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (this.redraw == null) {
+                return;
+            }
+            this.redraw.cancel(false);
+            this.redraw = null;
+        }
+        // Drawn on the timer thread, after any draw already under way.
+        Future<?> last = this.timer.submit(this::drawLast);
+        try {
+            last.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public synchronized void starting(Map<String, Long> sizes) {
+        this.sizes = new HashMap<>(sizes);
+        this.sending.clear();
+        this.done.clear();
+        this.samples.clear();
+        this.totalBytes = 0;
+        for (long size : sizes.values()) {
+            this.totalBytes += size;
+        }
+        this.doneBytes = 0;
+        this.lastStep = -1;
+    }
+
+    @Override
+    public synchronized void progress(String fileName, long sent,
+        long total) {
+        Long size = this.sizes.get(fileName);
+        if (size != null && total > 0 && !this.done.contains(fileName)) {
+            // The body is encoded, so it is bigger than the file.
+            this.sending.put(fileName, size * Math.min(sent, total) / total);
+        }
+    }
+
+    @Override
+    public synchronized void finished(String fileName) {
+        Long size = this.sizes.get(fileName);
+        if (size != null && this.done.add(fileName)) {
+            this.sending.remove(fileName);
+            this.doneBytes += size;
+        }
+    }
+
+    @Override
+    public synchronized void retrying(String verb, String url, int attempt,
+        long delayMillis) {
+        if (attempt == 1) {
+            this.retrying++;
+        }
+        this.retries++;
+    }
+
+    @Override
+    public synchronized void retried(String verb, String url) {
+        this.retrying--;
+    }
+
+    /**
+     * Draws the progress if it changed, or prints it if it is time to.
+     * Only ever runs on the timer thread.
+     */
+    private void draw() {
+        String line = line();
+        if (line == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (this.interactive) {
+            if (!line.equals(this.lastLine)) {
+                redraw(line);
+            }
+            return;
+        }
+        long step;
+        int retries;
+        int done;
+        synchronized (this) {
+            step = this.totalBytes > 0 ? sentBytes() * 10 / this.totalBytes
+                : this.done.size() * 10 / this.sizes.size();
+            retries = this.retries;
+            done = this.done.size();
+        }
+        if (step > this.lastStep || retries > this.lastRetries
+            || now - this.lastPrinted > TimeUnit.MILLISECONDS.toNanos(
+                QUIET_MILLIS)) {
+            this.out.println(line);
+            this.out.flush();
+            this.lastLine = line;
+            this.lastStep = step;
+            this.lastRetries = retries;
+            this.lastDone = done;
+            this.lastPrinted = now;
+        }
+    }
+
+    /**
+     * Draws the progress one last time, however little it changed, and
+     * leaves the line for whatever is printed next.
+     */
+    private void drawLast() {
+        String line = line();
+        if (line == null) {
+            return;
+        } else if (this.interactive) {
+            redraw(line);
+            this.out.println();
+        } else if (doneCount() != this.lastDone) {
+            this.out.println(line);
+        }
+        this.out.flush();
+        this.lastLine = "";
+    }
+
+    /**
+     * Overwrites the line last drawn on the terminal.
+     *
+     * @param line the new line.
+     */
+    private void redraw(String line) {
+        StringBuilder padded = new StringBuilder("\r").append(line);
+        for (int i = line.length(); i < this.lastLine.length(); i++) {
+            padded.append(' ');
+        }
+        this.out.print(padded);
+        this.out.flush();
+        this.lastLine = line;
+    }
+
+    /**
+     * @return the progress as a line of text, or null if there is nothing to
+     * push.
+     */
+    private synchronized String line() {
+        if (this.sizes.isEmpty()) {
+            return null;
+        }
+        long sent = sentBytes();
+        long now = System.nanoTime();
+        this.samples.addLast(new long[] {now, sent});
+        while (this.samples.size() > 2
+            && now - this.samples.peekFirst()[0] > WINDOW_NANOS) {
+            this.samples.removeFirst();
+        }
+        long[] first = this.samples.peekFirst();
+        double seconds = (now - first[0]) / 1e9;
+        double perSecond = seconds > 0 ? (sent - first[1]) / seconds : 0;
+        String left;
+        if (this.done.size() == this.sizes.size()) {
+            left = "done";
+        } else if (sent >= this.totalBytes) {
+            left = "finishing";
+        } else if (perSecond > 0) {
+            long eta = (long) Math.ceil((this.totalBytes - sent) / perSecond);
+            left = String.format("%d:%02d left", eta / 60, eta % 60);
+        } else {
+            left = "-:-- left";
+        }
+        StringBuilder line = new StringBuilder(String.format(
+            "    %d/%d files, %s/%s, %s/s, %s", this.done.size(),
+            this.sizes.size(), megabytes(sent), megabytes(this.totalBytes),
+            megabytes((long) perSecond), left));
+        if (this.retrying > 0) {
+            line.append(", ").append(this.retrying).append(" retrying");
+        }
+        return line.toString();
+    }
+
+    /**
+     * @return how many files have been pushed.
+     */
+    private synchronized int doneCount() {
+        return this.done.size();
+    }
+
+    /**
+     * @return how many bytes of the files have been sent, counting files
+     * part of the way through.
+     */
+    private synchronized long sentBytes() {
+        long sent = this.doneBytes;
+        for (long bytes : this.sending.values()) {
+            sent += bytes;
+        }
+        return sent;
+    }
+
+    /**
+     * @param bytes a number of bytes.
+     * @return the bytes in megabytes, to a tenth.
+     */
+    private static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
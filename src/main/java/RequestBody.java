@@ -0,0 +1,166 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents the body of an HTTPS request. Bodies write themselves straight
+ * to the connection, so large ones never need to be held in memory all at
+ * once. A body may be written more than once if its request is retried.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public interface RequestBody {
+
+    /**
+     * @return the number of bytes this body will write, or -1 if it is not
+     * known ahead of time.
+     * @throws IOException if the body had to be read to find its length, and
+     * could not be.
+     */
+    long getLength() throws IOException;
+
+    /**
+     * Writes the body.
+     *
+     * @param out the stream to write the body to.
+     * @throws IOException if the body could not be written.
+     */
+    void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Creates a body from a String that has already been formatted.
+     *
+     * @param json the contents of the body.
+     * @return a body that writes json encoded as UTF-8.
+     */
+    static RequestBody of(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return new RequestBody() {
+            @Override
+            public long getLength() {
+                return bytes.length;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(bytes);
+            }
+        };
+    }
+
+    /**
+     * Creates a body that is written as JSON straight to the connection.
+     * The JSON is measured first, so the request can be sent with a fixed
+     * length.
+     *
+     * @param content the JSON to send.
+     * @return a body that writes content.
+     */
+    static RequestBody json(JsonWriter.Content content) {
+        return new RequestBody() {
+            @Override
+            public long getLength() throws IOException {
+                return JsonWriter.measure(content);
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                JsonWriter json = new JsonWriter(out);
+                content.writeTo(json);
+                json.flush();
+            }
+        };
+    }
+
+    /**
+     * Creates a body holding a flat JSON object of String properties, as
+     * sent by post and put.
+     *
+     * @param properties an array of length 2 String arrays that represents the
+     * properties for the request. Each length 2 String[] is in the format
+     * {property, value}.
+     * @return a body holding properties formatted into JSON.
+     * @throws IllegalArgumentException in the event that properties is
+     * malformed.
+     */
+    static RequestBody properties(String[][] properties)
+        throws IllegalArgumentException {
+        if (properties == null) {
+            throw new IllegalArgumentException("properties must be non-null.");
+        }
+        for (int i = 0; i < properties.length; i++) {
+            String[] property = properties[i];
+            if (property == null) {
+                throw new IllegalArgumentException("Element " + i
+                    + " in properties is null, and must be non-null.");
+            }
+            if (property.length != 2) {
+                throw new IllegalArgumentException("Element " + i
+                    + " in properties is of length " + property.length
+                    + " and must be of length 2.");
+            }
+        }
+        return json(json -> {
+            json.beginObject();
+            for (String[] property : properties) {
+                json.name(property[0]).value(property[1]);
+            }
+            json.endObject();
+        });
+    }
+
+    /**
+     * Reports the progress of a body as it is written.
+     *
+     * @param body the body to report on.
+     * @param fileName the name of the file the body carries.
+     * @param progress where to report to.
+     * @return a body that writes the same bytes as body.
+     */
+    static RequestBody withProgress(RequestBody body, String fileName,
+        UploadProgress progress) {
+        return new RequestBody() {
+            @Override
+            public long getLength() throws IOException {
+                return body.getLength();
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                long total = body.getLength();
+                long step = Math.max(1, total / 100);
+                body.writeTo(new FilterOutputStream(out) {
+                    private long sent;
+                    private long reported;
+
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        sent(1);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len)
+                        throws IOException {
+                        out.write(b, off, len);
+                        sent(len);
+                    }
+
+                    /**
+                     * @param bytes how many more bytes were written.
+                     */
+                    private void sent(long bytes) {
+                        this.sent += bytes;
+                        if (this.sent - this.reported >= step
+                            || this.sent == total) {
+                            this.reported = this.sent;
+                            progress.progress(fileName, this.sent, total);
+                        }
+                    }
+                });
+            }
+        };
+    }
+}
@@ -0,0 +1,146 @@
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces requests to the server so that concurrent uploads do not trip
+ * GitHub's abuse detection. Every request takes a token from a bucket that
+ * refills at a steady rate, and requests that write to the server also take
+ * one of a limited number of write slots for as long as they are in flight.
+ *
+ * The rate adapts to the rate limit headers on each response. Once fewer
+ * requests are left in the window than the configured rate would use up in a
+ * minute, the remaining requests are spread evenly over what is left of the
+ * window instead, and when none are left requests wait for the reset.
+ *
+ * One throttle should be shared by everything that talks to the same server.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class RequestThrottle {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int RESERVE_SECONDS = 60;
+    private double requestsPerSecond;
+    private double burst;
+    private double tokens;
+    private long lastRefill;
+    private long pausedUntil;
+    private double allowedPerSecond;
+    private Semaphore writes;
+
+    /**
+     * Public constructor.
+     *
+     * @param requestsPerSecond the most requests to send per second.
+     * @param maxConcurrentWrites the most requests that change something on
+     * the server to have in flight at once.
+     * @throws IllegalArgumentException if either limit is not positive.
+     */
+    public RequestThrottle(double requestsPerSecond, int maxConcurrentWrites) {
+        if (requestsPerSecond <= 0 || maxConcurrentWrites < 1) {
+            throw new IllegalArgumentException("Throttle limits must be "
+                + "positive.");
+        }
+        this.requestsPerSecond = requestsPerSecond;
+        this.allowedPerSecond = requestsPerSecond;
+        this.burst = Math.max(1, requestsPerSecond);
+        this.tokens = this.burst;
+        this.lastRefill = System.nanoTime();
+        this.pausedUntil = this.lastRefill;
+        this.writes = new Semaphore(maxConcurrentWrites, true);
+    }
+
+    /**
+     * Waits until a request may be sent. Every call must be followed by a
+     * call to release once the request is finished.
+     *
+     * @param verb the kind of request (e.g GET, POST, PUT, PATCH, etc.).
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    public void acquire(String verb) throws InterruptedIOException {
+        try {
+            if (isWrite(verb)) {
+                this.writes.acquire();
+            }
+            long wait;
+            while ((wait = takeToken()) > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        } catch (InterruptedException e) {
+            if (isWrite(verb)) {
+                this.writes.release();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to "
+                + "send a request.");
+        }
+    }
+
+    /**
+     * Marks a request as finished.
+     *
+     * @param verb the kind of request that was sent.
+     */
+    public void release(String verb) {
+        if (isWrite(verb)) {
+            this.writes.release();
+        }
+    }
+
+    /**
+     * Adjusts the rate to the rate limit the server reported.
+     *
+     * @param remaining the X-RateLimit-Remaining header, or -1 if missing.
+     * @param resetEpochSeconds the X-RateLimit-Reset header, or -1 if missing.
+     */
+    public synchronized void update(long remaining, long resetEpochSeconds) {
+        if (remaining < 0 || resetEpochSeconds <= 0) {
+            return;
+        }
+        long untilReset = Math.max(1, resetEpochSeconds
+            - System.currentTimeMillis() / 1000);
+        if (remaining == 0) {
+            this.pausedUntil = System.nanoTime()
+                + untilReset * NANOS_PER_SECOND;
+            this.tokens = 0;
+        }
+        if (remaining >= this.requestsPerSecond * RESERVE_SECONDS) {
+            this.allowedPerSecond = this.requestsPerSecond;
+        } else {
+            this.allowedPerSecond = Math.min(this.requestsPerSecond,
+                Math.max((double) remaining / untilReset, 1.0 / untilReset));
+        }
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return 0 if a token was taken, or how many nanoseconds to wait before
+     * trying again.
+     */
+    private synchronized long takeToken() {
+        long now = System.nanoTime();
+        if (now < this.pausedUntil) {
+            return this.pausedUntil - now;
+        }
+        this.tokens = Math.min(this.burst, this.tokens
+            + (now - this.lastRefill) * this.allowedPerSecond
+            / NANOS_PER_SECOND);
+        this.lastRefill = now;
+        if (this.tokens >= 1) {
+            this.tokens--;
+            return 0;
+        }
+        return (long) ((1 - this.tokens) * NANOS_PER_SECOND
+            / this.allowedPerSecond) + 1;
+    }
+
+    /**
+     * @param verb the kind of request.
+     * @return whether the request changes something on the server.
+     */
+    private static boolean isWrite(String verb) {
+        return !verb.equalsIgnoreCase("GET");
+    }
+}
@@ -0,0 +1,71 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Reads the body of a response from the server as it arrives, so that large
+ * responses do not have to be turned into a String first.
+ *
+ * @param <T> what the response is read into.
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public interface ResponseHandler<T> {
+
+    /**
+     * Reads the response. Anything left unread is discarded afterwards.
+     *
+     * @param in the body of the response.
+     * @return what the response was read into.
+     * @throws IOException if the response could not be read.
+     */
+    T handle(InputStream in) throws IOException;
+
+    /**
+     * @return a handler that reads the whole response into a String.
+     */
+    static ResponseHandler<String> string() {
+        return in -> {
+            Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+            StringBuilder response = new StringBuilder();
+            char[] buffer = new char[8 * 1024];
+            int read;
+            while ((read = reader.read(buffer)) >= 0) {
+                response.append(buffer, 0, read);
+            }
+            return response.toString();
+        };
+    }
+
+    /**
+     * Creates a handler that pulls a few fields out of a JSON object and
+     * skips everything else. See JsonReader.readFields.
+     *
+     * @param paths the dot separated paths of the fields to read.
+     * @return a handler that reads the fields, keyed by path.
+     */
+    static ResponseHandler<Map<String, String>> fields(String... paths) {
+        return in -> JsonReader.readFields(in, paths);
+    }
+
+    /**
+     * Creates a handler that reads a single field out of a JSON object.
+     *
+     * @param path the dot separated path of the field.
+     * @return a handler that reads the field, and throws an IOException if
+     * the field is missing.
+     */
+    static ResponseHandler<String> field(String path) {
+        return in -> {
+            String value = JsonReader.readFields(in, path).get(path);
+            if (value == null) {
+                throw new IOException("Response from server is missing "
+                    + path + ".");
+            }
+            return value;
+        };
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Hears about requests that failed and are being retried, so a student
+ * watching a slow submission can tell it is still trying. Called from
+ * whichever thread is sending the request, so it must be safe to call from
+ * many threads at once.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public interface RetryListener {
+
+    /**
+     * Called when an attempt at a request failed and it is about to be
+     * retried, before waiting out the delay.
+     *
+     * @param verb the kind of request.
+     * @param url the url of the request.
+     * @param attempt the attempt that failed, starting at 1.
+     * @param delayMillis how long until the next attempt.
+     */
+    void retrying(String verb, String url, int attempt, long delayMillis);
+
+    /**
+     * Called once a request that was retried has finished, whether it
+     * succeeded in the end or not.
+     *
+     * @param verb the kind of request.
+     * @param url the url of the request.
+     */
+    void retried(String verb, String url);
+}
@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides whether and when a failed request should be tried again. Delays
+ * grow exponentially with full jitter, so that many clients failing at once
+ * do not all come back at once. When the server says how long to wait, with
+ * Retry-After or the rate limit headers, that is used instead.
+ *
+ * Each kind of request has its own limit on attempts, and all requests share
+ * one budget of retries, so a run that keeps failing gives up rather than
+ * hammering the server.
+ *
+ * Only requests that are safe to send twice are retried blindly: GET, PUT
+ * and DELETE, and POSTs of blobs and trees, which are addressed by their
+ * content. Any other request is only retried when the server refused it
+ * without acting on it. Whoever sends one has to read back what happened
+ * before trying it again.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class RetryPolicy {
+    private static final int DEFAULT_MAX_ATTEMPTS = 4;
+    private static final int DEFAULT_BUDGET = 50;
+    private static final long BASE_DELAY_MILLIS = 500;
+    private static final long MAX_DELAY_MILLIS = 30 * 1000;
+    private static final long MAX_WAIT_MILLIS = 5 * 60 * 1000;
+    private Map<String, Integer> maxAttempts;
+    private AtomicInteger budget;
+
+    /**
+     * Public constructor. Uses the default retry budget.
+     */
+    public RetryPolicy() {
+        this(DEFAULT_BUDGET);
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param budget the most retries allowed across every request.
+     */
+    public RetryPolicy(int budget) {
+        this.maxAttempts = new HashMap<>();
+        this.budget = new AtomicInteger(budget);
+    }
+
+    /**
+     * Sets the most times one kind of request may be attempted.
+     *
+     * @param verb the kind of request (e.g GET, POST, PUT, PATCH, etc.).
+     * @param attempts the most attempts, including the first.
+     * @return this policy.
+     */
+    public RetryPolicy withMaxAttempts(String verb, int attempts) {
+        this.maxAttempts.put(verb.toUpperCase(), attempts);
+        return this;
+    }
+
+    /**
+     * Decides whether to retry a request that just failed.
+     *
+     * @param verb the kind of request that failed.
+     * @param url the url of the request, relative to the server.
+     * @param attempt how many times the request has been attempted so far.
+     * @param e why the request failed.
+     * @return how many milliseconds to wait before retrying, or -1 to give up.
+     */
+    public long retryDelay(String verb, String url, int attempt,
+        IOException e) {
+        Integer limit = this.maxAttempts.get(verb.toUpperCase());
+        if (attempt >= (limit == null ? DEFAULT_MAX_ATTEMPTS : limit)
+            || !isRetryable(verb, url, e)) {
+            return -1;
+        }
+        long delay = serverDelay(e);
+        if (delay > MAX_WAIT_MILLIS) {
+            return -1;
+        }
+        if (this.budget.getAndDecrement() <= 0) {
+            return -1;
+        }
+        if (delay >= 0) {
+            return delay;
+        }
+        long ceiling = Math.min(MAX_DELAY_MILLIS,
+            BASE_DELAY_MILLIS << Math.min(attempt - 1, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * @param verb the kind of request that failed.
+     * @param url the url of the request, relative to the server.
+     * @param e why the request failed.
+     * @return whether the request can be sent again as it is, and trying
+     * again could help.
+     */
+    private static boolean isRetryable(String verb, String url,
+        IOException e) {
+        // Requests the server turned away, or that never reached it, were
+        // not acted on, so sending them again cannot do anything twice.
+        if ((e instanceof HttpStatusException
+            && ((HttpStatusException) e).isRateLimited())
+            || e instanceof ConnectException) {
+            return true;
+        }
+        return isRepeatable(verb, url) && isTransient(e);
+    }
+
+    /**
+     * @param verb the kind of request.
+     * @param url the url of the request, relative to the server.
+     * @return whether sending the request twice has the same effect as
+     * sending it once.
+     */
+    private static boolean isRepeatable(String verb, String url) {
+        switch (verb.toUpperCase()) {
+        case "GET":
+        case "PUT":
+        case "DELETE":
+            return true;
+        case "POST":
+            String path = url.split("\\?")[0];
+            return path.endsWith("/git/blobs") || path.endsWith("/git/trees");
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Decides whether a failure may go away by itself, ignoring whether the
+     * request is safe to send again.
+     *
+     * @param e why the request failed.
+     * @return whether trying again could help.
+     */
+    public static boolean isTransient(IOException e) {
+        if (e instanceof HttpStatusException) {
+            return ((HttpStatusException) e).isRateLimited()
+                || HttpStatusException.hasStatus(e, 500, 502, 503, 504);
+        }
+        // Only a connection that dropped or timed out may go away by itself.
+        // Anything else, such as a response that could not be parsed or a
+        // local file that could not be read, would fail the same way again.
+        return e instanceof SocketException
+            || e instanceof InterruptedIOException
+            || e.getCause() instanceof SocketException;
+    }
+
+    /**
+     * @param e why a request failed.
+     * @return how long the server asked to wait in milliseconds, or -1 if it
+     * did not say.
+     */
+    private static long serverDelay(IOException e) {
+        if (!(e instanceof HttpStatusException)) {
+            return -1;
+        }
+        HttpStatusException status = (HttpStatusException) e;
+        if (status.getRetryAfterSeconds() >= 0) {
+            return status.getRetryAfterSeconds() * 1000;
+        }
+        if (status.getRateLimitRemaining() == 0
+            && status.getRateLimitReset() > 0) {
+            return Math.max(0, status.getRateLimitReset() * 1000
+                - System.currentTimeMillis());
+        }
+        return -1;
+    }
+}
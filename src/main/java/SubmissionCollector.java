@@ -0,0 +1,263 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Collects every student's submission for an assignment on behalf of the
+ * head TA. Finds the repositories the TA was added to as a collaborator,
+ * downloads each one as a zip, and unpacks it into its own directory named
+ * after the student.
+ *
+ * Each submission is unpacked into a temporary directory and only renamed
+ * into place once it is complete, so an interrupted collection can simply
+ * be run again, and only the submissions that are missing are downloaded.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class SubmissionCollector {
+    private static final int PAGE_SIZE = 100;
+    private static final String PARTIAL_SUFFIX = ".partial";
+    private HttpsService https;
+    private String repositoryPrefix;
+    private Path directory;
+    private int concurrency = 1;
+    private long timeoutMillis;
+
+    /**
+     * Public constructor.
+     *
+     * @param https the service to send requests through, authenticated as
+     * the head TA.
+     * @param repositoryPrefix what every submission's repository name starts
+     * with, which is prefix-assignmentName-.
+     * @param directory the directory to unpack submissions into.
+     */
+    public SubmissionCollector(HttpsService https, String repositoryPrefix,
+        Path directory) {
+        this.https = https;
+        this.repositoryPrefix = repositoryPrefix;
+        this.directory = directory.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Sets how many submissions may be downloaded at the same time.
+     *
+     * @param concurrency the most downloads in flight at once.
+     * @throws IllegalArgumentException if concurrency is less than 1.
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least "
+                + "1, but was " + concurrency + ".");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sets how long downloading a single submission may take once it has
+     * started, retries included. One that takes longer is reported as a
+     * failure, and the rest carry on.
+     *
+     * @param timeout how long a download may take, or 0 for no limit.
+     * @param unit the unit of timeout.
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Finds the repositories of every submission for the assignment.
+     *
+     * @return the full names (owner/name) of the repositories.
+     * @throws IOException if there was a connection or authentication issue.
+     */
+    public List<String> findRepositories() throws IOException {
+        List<String> repositories = new ArrayList<>();
+        for (int page = 1;; page++) {
+            List<String> found = this.https.send("GET", String.format(
+                "/user/repos?affiliation=collaborator&per_page=%d&page=%d",
+                PAGE_SIZE, page), null, in -> {
+                    List<String> names = new ArrayList<>();
+                    JsonReader json = new JsonReader(in);
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        names.add(json.readObject("full_name")
+                            .get("full_name"));
+                    }
+                    json.endArray();
+                    return names;
+                });
+            for (String name : found) {
+                if (name != null && name.substring(name.indexOf('/') + 1)
+                    .startsWith(this.repositoryPrefix)) {
+                    repositories.add(name);
+                }
+            }
+            if (found.size() < PAGE_SIZE) {
+                return repositories;
+            }
+        }
+    }
+
+    /**
+     * Downloads and unpacks every submission that has not already been
+     * collected. Every submission is attempted even if some fail.
+     *
+     * @param repositories the full names of the repositories to collect.
+     * @return the repositories that could not be collected, mapped to the
+     * reason why. Empty if all of them were collected.
+     * @throws IOException if the directory could not be created.
+     */
+    public Map<String, IOException> collect(List<String> repositories)
+        throws IOException {
+        Files.createDirectories(this.directory);
+        // Every download is started at once, and queues for one of the
+        // threads rather than holding a thread of its own while it waits.
+        AsyncHttpsAdapter async = new AsyncHttpsAdapter(this.https,
+            Math.max(1, Math.min(this.concurrency, repositories.size())));
+        async.setTimeout(this.timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (String repository : repositories) {
+                futures.add(collect(async, repository));
+            }
+            Map<String, IOException> failures = new LinkedHashMap<>();
+            for (int i = 0; i < repositories.size(); i++) {
+                try {
+                    AsyncHttpsService.await(futures.get(i));
+                } catch (InterruptedIOException e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Interrupted while "
+                            + "collecting submissions.");
+                    }
+                    failures.put(repositories.get(i), e);
+                } catch (IOException e) {
+                    failures.put(repositories.get(i), e);
+                }
+            }
+            return failures;
+        } finally {
+            async.shutdown();
+        }
+    }
+
+    /**
+     * @param repository the full name of a submission's repository.
+     * @return the directory the submission is unpacked into.
+     */
+    public Path getSubmissionDirectory(String repository) {
+        String name = repository.substring(repository.indexOf('/') + 1);
+        return this.directory.resolve(
+            name.substring(this.repositoryPrefix.length()));
+    }
+
+    /**
+     * Starts downloading and unpacking a single submission, unless it was
+     * already collected.
+     *
+     * @param async the service to download the submission through.
+     * @param repository the full name of the repository.
+     * @return a future that completes once the submission is in place, or
+     * with the IOException it could not be downloaded or unpacked because
+     * of.
+     */
+    private CompletableFuture<Void> collect(AsyncHttpsService async,
+        String repository) {
+        Path target = getSubmissionDirectory(repository);
+        if (Files.isDirectory(target)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Path partial = target.resolveSibling(target.getFileName()
+            + PARTIAL_SUFFIX);
+        return async.sendAsync("GET", "/repos/" + repository + "/zipball",
+            null, in -> {
+                // Each attempt starts clean, since one that was cut off
+                // leaves part of the submission behind.
+                delete(partial);
+                Files.createDirectories(partial);
+                unzip(in, partial);
+                return null;
+            }).thenApply(unzipped -> {
+                try {
+                    Files.move(partial, target);
+                    return null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    /**
+     * Unpacks a zipball. GitHub puts everything in the zip inside a single
+     * directory named after the commit, which is left out.
+     *
+     * @param in the zip.
+     * @param target the directory to unpack into.
+     * @throws IOException if the zip could not be read or unpacked, or tries
+     * to write outside of target.
+     */
+    private static void unzip(InputStream in, Path target) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            String name = entry.getName();
+            name = name.substring(name.indexOf('/') + 1);
+            if (name.isEmpty()) {
+                continue;
+            }
+            Path path = target.resolve(name).normalize();
+            if (!path.startsWith(target)) {
+                throw new IOException("Zip entry " + entry.getName()
+                    + " is outside of the submission.");
+            }
+            if (entry.isDirectory()) {
+                Files.createDirectories(path);
+            } else {
+                Files.createDirectories(path.getParent());
+                Files.copy(zip, path);
+            }
+        }
+    }
+
+    /**
+     * Deletes a directory and everything in it, if it exists.
+     *
+     * @param path the directory to delete.
+     * @throws IOException if it could not be deleted.
+     */
+    private static void delete(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file,
+                BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir,
+                IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
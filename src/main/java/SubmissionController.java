@@ -1,7 +1,18 @@
 import java.io.IOException;
 import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
 import java.net.UnknownHostException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 
 /**
  * Handles the control flow for the submission tool. Panders between the
@@ -13,6 +24,9 @@ import java.util.Properties;
 public class SubmissionController {
     private UserInterface cli;
     private GitHubSubmitter submitter;
+    private SubmissionMetrics metrics;
+    private SubmissionJournal journal;
+    private ProgressDisplay progress;
 
     /**
      * Begins the submission process for the assignment. Will attempt to create
@@ -22,32 +36,570 @@ public class SubmissionController {
      * all required properties have been checked and are nonnull.
      */
     public void start(Properties properties) {
+        start(properties, false);
+    }
+
+    /**
+     * Submits the files like start does, and then keeps watching them,
+     * submitting them again every time they are saved. Only files that
+     * changed are pushed. Runs until the program is killed.
+     *
+     * @param properties the properties for the submission tool. Assumed that
+     * all required properties have been checked and are nonnull.
+     */
+    public void watch(Properties properties) {
+        start(properties, true);
+    }
+
+    /**
+     * Submits the files, and then watches them if asked to.
+     *
+     * @param properties the properties for the submission tool.
+     * @param watch whether to keep submitting the files as they change.
+     */
+    private void start(Properties properties, boolean watch) {
         cli = new UserInterface(properties.getProperty("className"),
             properties.getProperty("helpEmails"));
+        int concurrency = Integer.parseInt(
+            properties.getProperty("concurrency", "1"));
+        String[] fileNames = properties.getProperty("fileNames").split(" ");
+        GitHubHttpsService https = createHttpsService(properties,
+            concurrency);
+
+        // The server is looked up and connected to, and the files are found
+        // and hashed, while the student is typing. Files are hashed again
+        // later if that fails, so the failure is reported in its stage.
+        ExecutorService pipeline = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "submission-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture.runAsync(https::warmUp, pipeline);
+        CompletableFuture<Map<String, String>> hashed =
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    return GitHubSubmitter.hashFiles(fileNames);
+                } catch (IOException e) {
+                    return null;
+                }
+            }, pipeline);
+
         String username = cli.getUsername();
         String password = cli.getPassword();
+        https.setCredentials(username, password);
+        startMetrics(properties);
+        https.setMetrics(metrics);
+        submitter = createSubmitter(properties, https, username);
+        progress = cli.createProgressDisplay();
+        submitter.setProgress(progress);
+        https.setRetryListener(progress);
 
-        submitter = new GitHubSubmitter(
-            properties.getProperty("hostURL"),
-            properties.getProperty("prefix")
-                + "-" + properties.getProperty("assignmentName")
-                + "-" + username,
-            properties.getProperty("headTA"),
-            username,
-            password,
-            properties.getProperty("fileNames").split(" "));
+        if (Boolean.parseBoolean(properties.getProperty("journal", "false"))) {
+            try {
+                journal = SubmissionJournal.forRepository(
+                    submitter.getRepositoryName());
+                submitter.setJournal(journal);
+                if (journal.hasProgress()) {
+                    cli.printResumingMessage();
+                }
+            } catch (IOException e) {
+                // Without a readable journal the submission starts over.
+                journal = null;
+            }
+        }
 
-        boolean success = false;
-        success = createRepository() && addCollaborators() && submitFiles();
+        // Any files still being hashed are finished while the repository is
+        // being created, and uploading starts as soon as the repository is
+        // confirmed, while the collaborators are still being added. The
+        // stages still report in order. If the collaborators cannot be
+        // added, uploads that have not started yet are called off, since no
+        // one could grade them.
+        CompletableFuture<Void> prepared = hashed.thenRunAsync(
+            unchecked(() -> {
+                long start = System.nanoTime();
+                Map<String, String> shas = hashed.join();
+                if (shas != null) {
+                    submitter.setHashedFiles(shas);
+                }
+                submitter.prepare();
+                recordStage("prepareFiles", start);
+            }), pipeline);
+        boolean success = stage("createRepository", this::createRepository);
+        if (success) {
+            AtomicBoolean started = new AtomicBoolean();
+            CompletableFuture<Void> uploaded = prepared.thenRunAsync(
+                unchecked(() -> {
+                    if (started.compareAndSet(false, true)) {
+                        submitter.addFiles();
+                    }
+                }), pipeline);
+            boolean shared = stage("addCollaborators",
+                this::addCollaborators);
+            boolean calledOff = !shared && started.compareAndSet(false, true);
+            success = shared && stage("submitFiles",
+                () -> submitFiles(uploaded));
+            // Lets uploads that were already under way finish, so the
+            // manifest and journal match what was pushed.
+            uploaded.handle((result, e) -> null).join();
+            if (!shared && !calledOff
+                && !uploaded.isCompletedExceptionally()) {
+                cli.printPushedWithoutAccessMessage();
+            }
+        }
+        pipeline.shutdown();
+        writeMetrics(properties);
+        if (success && journal != null) {
+            try {
+                journal.delete();
+            } catch (IOException e) {
+                // A leftover journal only means the next run skips stages
+                // that were already done.
+                journal = null;
+            }
+        }
 
         if (success) {
             cli.printSuccessMessage(username, submitter.getRepositoryName());
         } else {
             cli.printFailureMessage();
         }
+        if (success && watch) {
+            watchFiles(properties);
+        }
+        cli.cleanup();
+    }
+
+    /**
+     * Submits the files again every time they change, until interrupted.
+     * Bursts of saves are gathered into a single push once the files have
+     * been left alone for watchDelay milliseconds.
+     *
+     * @param properties the properties for the submission tool.
+     */
+    private void watchFiles(Properties properties) {
+        String[] fileNames = properties.getProperty("fileNames").split(" ");
+        long quietMillis = Long.parseLong(
+            properties.getProperty("watchDelay", "300"));
+        try (SubmissionWatcher watcher = new SubmissionWatcher(Paths.get(""),
+            FileScanner.withIgnoreFile(Paths.get("")), quietMillis,
+            fileNames)) {
+            cli.printWatchingMessage();
+            while (true) {
+                List<String> changed = submitter.refresh(
+                    watcher.awaitChanges());
+                if (changed.isEmpty()) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                try {
+                    submitter.addFiles();
+                    if (journal != null) {
+                        journal.delete();
+                    }
+                    cli.printResubmittedMessage(changed,
+                        (System.nanoTime() - start) / 1000000);
+                } catch (FileSubmissionException e) {
+                    cli.printFileFailuresMessage(e.getFailures());
+                } catch (UnknownHostException e) {
+                    // The next save tries again.
+                    cli.printCouldNotConnectMessage();
+                } catch (IOException e) {
+                    cli.printHelpMessage(e);
+                }
+            }
+        } catch (IOException e) {
+            cli.printHelpMessage(e);
+        }
+    }
+
+    /**
+     * Collects every student's submission for the assignment into a
+     * directory, for the head TA. Submissions that were already collected
+     * are skipped, so this can be run again if it was interrupted.
+     *
+     * @param properties the properties for the submission tool. Assumed that
+     * all required properties have been checked and are nonnull.
+     * @param directory the directory to collect submissions into.
+     */
+    public void collect(Properties properties, String directory) {
+        cli = new UserInterface(properties.getProperty("className"),
+            properties.getProperty("helpEmails"));
+        int concurrency = Integer.parseInt(
+            properties.getProperty("concurrency", "1"));
+        GitHubHttpsService https = createHttpsService(properties,
+            concurrency);
+        CompletableFuture.runAsync(https::warmUp);
+        String username = cli.getUsername();
+        String password = cli.getPassword();
+        https.setCredentials(username, password);
+        startMetrics(properties);
+        https.setMetrics(metrics);
+
+        SubmissionCollector collector = new SubmissionCollector(https,
+            properties.getProperty("prefix")
+                + "-" + properties.getProperty("assignmentName") + "-",
+            Paths.get(directory));
+        collector.setConcurrency(concurrency);
+        String collectTimeout = properties.getProperty("collectTimeout");
+        if (collectTimeout != null) {
+            collector.setTimeout(Long.parseLong(collectTimeout),
+                TimeUnit.SECONDS);
+        }
+        try {
+            cli.printFindingSubmissionsMessage();
+            long start = System.nanoTime();
+            List<String> repositories = collector.findRepositories();
+            recordStage("findRepositories", start);
+            cli.printCollectingMessage(repositories.size(), directory);
+            start = System.nanoTime();
+            Map<String, IOException> failures =
+                collector.collect(repositories);
+            recordStage("collect", start);
+            if (failures.isEmpty()) {
+                cli.printStageSuccessMessage();
+            } else {
+                cli.printCollectionFailuresMessage(failures);
+            }
+        } catch (UnknownHostException e) {
+            cli.printCouldNotConnectMessage();
+        } catch (IOException e) {
+            if (HttpStatusException.hasStatus(e, 401)) {
+                cli.printIncorrectCredentialsMessage();
+            } else {
+                cli.printHelpMessage(e);
+            }
+        }
+        writeMetrics(properties);
+        cli.cleanup();
+    }
+
+    /**
+     * Runs a gateway that takes submissions from students over HTTP and
+     * pushes them to GitHub on their behalf, until the program is killed.
+     * Every submission shares one throttle, so requestsPerSecond and
+     * concurrentWrites limit the gateway as a whole, and at most
+     * gatewayWorkers submissions are pushed at once.
+     *
+     * @param properties the properties for the submission tool. Assumed that
+     * all required properties have been checked and are nonnull.
+     * @param port the port to listen on.
+     */
+    public void serve(Properties properties, int port) {
+        cli = new UserInterface(properties.getProperty("className"),
+            properties.getProperty("helpEmails"));
+        int concurrency = Integer.parseInt(
+            properties.getProperty("concurrency", "1"));
+        int workers = Integer.parseInt(
+            properties.getProperty("gatewayWorkers", "8"));
+        RequestThrottle throttle = createThrottle(properties,
+            workers * concurrency);
+        startMetrics(properties);
+        try {
+            SubmissionGateway gateway = new SubmissionGateway(port,
+                Paths.get(properties.getProperty("gatewayDirectory",
+                    "gateway")), workers,
+                (username, password) -> {
+                    GitHubHttpsService https = createHttpsService(properties,
+                        concurrency);
+                    https.setCredentials(username, password);
+                    https.setThrottle(throttle);
+                    https.setMetrics(metrics);
+                    return createSubmitter(properties, https, username);
+                });
+            gateway.setMetrics(metrics);
+            gateway.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                gateway.stop();
+                writeMetrics(properties);
+            }));
+            cli.printServingMessage(gateway.getPort());
+            Thread.currentThread().join();
+        } catch (IOException e) {
+            cli.printHelpMessage(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         cli.cleanup();
     }
 
+    /**
+     * Works out what submitting the files would do, without changing
+     * anything on GitHub: which requests would be sent, how many bytes their
+     * bodies would hold, how much of the rate limit they would use, and
+     * roughly how long they would take. The files are found and hashed, and
+     * compared with what is already in the repository, exactly as for a
+     * real submission. The manifest is read but not updated, and the
+     * journal is not used.
+     *
+     * @param properties the properties for the submission tool. Assumed that
+     * all required properties have been checked and are nonnull.
+     */
+    public void dryRun(Properties properties) {
+        cli = new UserInterface(properties.getProperty("className"),
+            properties.getProperty("helpEmails"));
+        int concurrency = Integer.parseInt(
+            properties.getProperty("concurrency", "1"));
+        GitHubHttpsService https = createHttpsService(properties,
+            concurrency);
+        CompletableFuture.runAsync(https::warmUp);
+        String username = cli.getUsername();
+        String password = cli.getPassword();
+        https.setCredentials(username, password);
+
+        DryRunHttpsService dryRun = new DryRunHttpsService(https, username);
+        GitHubSubmitter submitter = createSubmitter(properties, dryRun,
+            username);
+        if (Boolean.parseBoolean(properties.getProperty("manifest", "false"))) {
+            try {
+                submitter.setManifest(SubmissionManifest.forRepository(
+                    submitter.getRepositoryName()).copy());
+            } catch (IOException e) {
+                // The real submission would push every file too.
+                submitter.setManifest(null);
+            }
+        }
+        try {
+            cli.printPlanningMessage();
+            try {
+                submitter.createRepository();
+            } catch (HttpStatusException e) {
+                // As in a real submission, an existing repository is used.
+                if (!HttpStatusException.hasStatus(e, 422)) {
+                    throw e;
+                }
+                cli.printRepositoryExistsMessage();
+            }
+            submitter.addCollaborators();
+            submitter.addFiles();
+            List<DryRunHttpsService.Request> requests = dryRun.getRequests();
+            Map<String, String> rateLimit = https.send("GET", "/rate_limit",
+                null, ResponseHandler.fields("resources.core.limit",
+                    "resources.core.remaining"));
+            cli.printDryRunReport(submitter.getRepositoryName(), requests,
+                rateLimit.get("resources.core.limit"),
+                rateLimit.get("resources.core.remaining"),
+                estimateMillis(properties, requests,
+                    dryRun.getAverageReadMillis(), concurrency));
+        } catch (FileNotFoundException e) {
+            cli.printFileNotFoundMessage(e.getMessage());
+        } catch (UnknownHostException e) {
+            cli.printCouldNotConnectMessage();
+        } catch (IOException e) {
+            if (HttpStatusException.hasStatus(e, 401)) {
+                cli.printIncorrectCredentialsMessage();
+            } else {
+                cli.printHelpMessage(e);
+            }
+        }
+        cli.cleanup();
+    }
+
+    /**
+     * Roughly estimates how long a submission would take, from how long
+     * requests take to come back, not counting the time to upload the files.
+     * Requests for separate files are sent concurrency at a time, and every
+     * other request waits for the one before it.
+     *
+     * @param properties the properties for the submission tool.
+     * @param requests the requests the submission would send.
+     * @param roundTripMillis how long a request takes to come back.
+     * @param concurrency how many files are sent at once.
+     * @return the estimate, in milliseconds.
+     */
+    private static long estimateMillis(Properties properties,
+        List<DryRunHttpsService.Request> requests, long roundTripMillis,
+        int concurrency) {
+        long perFile = 0;
+        for (DryRunHttpsService.Request request : requests) {
+            if (request.getUrl().contains("/git/blobs")
+                || request.isWrite() && request.getUrl().contains(
+                    "/contents/")) {
+                perFile++;
+            }
+        }
+        long rounds = requests.size() - perFile
+            + (perFile + concurrency - 1) / concurrency;
+        long millis = rounds * roundTripMillis;
+        String requestsPerSecond = properties.getProperty("requestsPerSecond");
+        if (requestsPerSecond != null) {
+            millis = Math.max(millis, (long) (requests.size() * 1000
+                / Double.parseDouble(requestsPerSecond)));
+        }
+        return millis;
+    }
+
+    /**
+     * Starts keeping metrics, if the metricsReport property asks for a
+     * report.
+     *
+     * @param properties the properties for the submission tool.
+     */
+    private void startMetrics(Properties properties) {
+        if (properties.getProperty("metricsReport") != null) {
+            metrics = new SubmissionMetrics();
+        }
+    }
+
+    /**
+     * Writes the metrics report to the file named by the metricsReport
+     * property, if metrics are being kept.
+     *
+     * @param properties the properties for the submission tool.
+     */
+    private void writeMetrics(Properties properties) {
+        if (metrics == null) {
+            return;
+        }
+        try {
+            metrics.writeReport(Paths.get(
+                properties.getProperty("metricsReport")));
+        } catch (IOException e) {
+            // The report is only for diagnosing slow submissions, so failing
+            // to write it is not worth bothering the student about.
+            return;
+        }
+    }
+
+    /**
+     * Runs a stage of the submission, recording how long it took if metrics
+     * are being kept. Stages the journal shows were finished by a run that
+     * was cut off are skipped, and finished stages are journaled.
+     *
+     * @param name the name of the stage.
+     * @param stage the stage, which returns whether it succeeded.
+     * @return whether the stage succeeded.
+     */
+    private boolean stage(String name, BooleanSupplier stage) {
+        if (journal != null && journal.isDone(name)) {
+            return true;
+        }
+        long start = System.nanoTime();
+        boolean succeeded = stage.getAsBoolean();
+        recordStage(name, start);
+        if (succeeded && journal != null) {
+            journal.recordStage(name);
+        }
+        return succeeded;
+    }
+
+    /**
+     * Records how long a stage took, if metrics are being kept.
+     *
+     * @param name the name of the stage.
+     * @param start when the stage started, from System.nanoTime().
+     */
+    private void recordStage(String name, long start) {
+        if (metrics != null) {
+            metrics.recordStage(name, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Creates the service used to talk to GitHub, as chosen by the
+     * httpsService property.
+     *
+     * @param properties the properties for the submission tool.
+     * @param concurrency how many requests may be in flight at once.
+     * @return the service to submit through, which has no credentials
+     * yet.
+     */
+    private GitHubHttpsService createHttpsService(Properties properties,
+        int concurrency) {
+        String hostURL = properties.getProperty("hostURL");
+        GitHubHttpsService service;
+        if (properties.getProperty("httpsService", "default")
+            .equals("persistent")) {
+            service = new PersistentHttpsService(hostURL, null, null,
+                concurrency);
+        } else {
+            service = new GitHubHttpsService(hostURL, null, null);
+        }
+        service.setThrottle(createThrottle(properties, concurrency));
+        String cacheSize = properties.getProperty("cacheSize");
+        if (cacheSize != null) {
+            try {
+                service.setCache(HttpCache.inHomeDirectory(
+                    Long.parseLong(cacheSize) * 1024 * 1024));
+            } catch (IOException e) {
+                // Without a usable cache every GET is simply sent in full.
+                service.setCache(null);
+            }
+        }
+        String requestTimeout = properties.getProperty("requestTimeout");
+        if (requestTimeout != null) {
+            int millis = Integer.parseInt(requestTimeout) * 1000;
+            service.setTimeouts(millis, millis);
+        }
+        service.setCompressRequests(Boolean.parseBoolean(
+            properties.getProperty("compressRequests")));
+        String retryBudget = properties.getProperty("retryBudget");
+        if (retryBudget != null) {
+            service.setRetryPolicy(new RetryPolicy(
+                Integer.parseInt(retryBudget)));
+        }
+        return service;
+    }
+
+    /**
+     * Creates the throttle requests to GitHub are paced by, if the
+     * requestsPerSecond property asks for one.
+     *
+     * @param properties the properties for the submission tool.
+     * @param concurrency how many requests may be in flight at once.
+     * @return the throttle, or null for no throttling.
+     */
+    private RequestThrottle createThrottle(Properties properties,
+        int concurrency) {
+        String requestsPerSecond = properties.getProperty("requestsPerSecond");
+        if (requestsPerSecond == null) {
+            return null;
+        }
+        return new RequestThrottle(Double.parseDouble(requestsPerSecond),
+            Integer.parseInt(properties.getProperty("concurrentWrites",
+                String.valueOf(concurrency))));
+    }
+
+    /**
+     * Creates the submitter for a student, set up as the properties ask.
+     *
+     * @param properties the properties for the submission tool.
+     * @param https the service to submit through, with the student's
+     * credentials.
+     * @param username the student's GitHub username.
+     * @return the submitter.
+     */
+    private GitHubSubmitter createSubmitter(Properties properties,
+        HttpsService https, String username) {
+        GitHubSubmitter submitter = new GitHubSubmitter(https,
+            properties.getProperty("prefix")
+                + "-" + properties.getProperty("assignmentName")
+                + "-" + username,
+            properties.getProperty("headTA"),
+            username,
+            properties.getProperty("fileNames").split(" "));
+        submitter.setSingleCommit(Boolean.parseBoolean(
+            properties.getProperty("singleCommit", "false")));
+        submitter.setConcurrency(Integer.parseInt(
+            properties.getProperty("concurrency", "1")));
+        submitter.setMetrics(metrics);
+        String largeFileThreshold = properties.getProperty(
+            "largeFileThreshold");
+        if (largeFileThreshold != null) {
+            submitter.setLargeFileThreshold(
+                Long.parseLong(largeFileThreshold) * 1024);
+        }
+        if (Boolean.parseBoolean(properties.getProperty("manifest", "false"))) {
+            try {
+                submitter.setManifest(SubmissionManifest.forRepository(
+                    submitter.getRepositoryName()));
+            } catch (IOException e) {
+                // Without a readable manifest every file is simply pushed.
+                submitter.setManifest(null);
+            }
+        }
+        return submitter;
+    }
+
     /**
      * Attempts to create the repository for the assignment. This stage of
      * the submission process succeeds as long as it has positive confirmation
@@ -65,10 +617,9 @@ public class SubmissionController {
             cli.printCouldNotConnectMessage();
             requestGood = false;
         } catch (IOException e) {
-            String message = e.getMessage();
-            if (message.contains("422")) {
+            if (HttpStatusException.hasStatus(e, 422)) {
                 cli.printRepositoryExistsMessage();
-            } else if (message.contains("401")) {
+            } else if (HttpStatusException.hasStatus(e, 401)) {
                 cli.printIncorrectCredentialsMessage();
                 requestGood = false;
             } else {
@@ -96,8 +647,7 @@ public class SubmissionController {
             cli.printCouldNotConnectMessage();
             requestGood = false;
         } catch (IOException e) {
-            String message = e.getMessage();
-            if (message.contains("401")) {
+            if (HttpStatusException.hasStatus(e, 401)) {
                 cli.printIncorrectCredentialsMessage();
             } else {
                 cli.printHelpMessage(e);
@@ -108,26 +658,41 @@ public class SubmissionController {
     }
 
     /**
-     * Attempts to submit the files to the repository. Succeeds in the event
-     * that all files are added successfully.
+     * Waits for the files to be submitted to the repository. Succeeds in the
+     * event that all files are added successfully.
      *
+     * @param uploaded the submission of the files, which may already be
+     * under way.
      * @return whether or not this stage of the process failed.
      */
-    private boolean submitFiles() {
+    private boolean submitFiles(CompletableFuture<Void> uploaded) {
         boolean requestGood = true;
         try {
             cli.printFilesMessage();
-            submitter.addFiles();
+            progress.show();
+            try {
+                await(uploaded);
+            } finally {
+                progress.stop();
+            }
             cli.printStageSuccessMessage();
         } catch (FileNotFoundException e) {
             cli.printFileNotFoundMessage(e.getMessage());
             requestGood = false;
+        } catch (FileSubmissionException e) {
+            if (anyFailure(e, 401)) {
+                cli.printIncorrectCredentialsMessage();
+            } else if (anyFailure(e, -1)) {
+                cli.printCouldNotConnectMessage();
+            } else {
+                cli.printFileFailuresMessage(e.getFailures());
+            }
+            requestGood = false;
         } catch (UnknownHostException e) {
             cli.printCouldNotConnectMessage();
             requestGood = false;
         } catch (IOException e) {
-            String message = e.getMessage();
-            if (message.contains("401")) {
+            if (HttpStatusException.hasStatus(e, 401)) {
                 cli.printIncorrectCredentialsMessage();
             } else {
                 cli.printHelpMessage(e);
@@ -136,4 +701,68 @@ public class SubmissionController {
         }
         return requestGood;
     }
+
+    /**
+     * Waits for something running in the pipeline to finish.
+     *
+     * @param future what is running.
+     * @throws IOException whatever it failed with.
+     */
+    private static void await(CompletableFuture<Void> future)
+        throws IOException {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Wraps something that may fail with an IOException so that it can run
+     * in the pipeline.
+     *
+     * @param action what to run.
+     * @return a Runnable that throws any IOException as an
+     * UncheckedIOException.
+     */
+    private static Runnable unchecked(IOAction action) {
+        return () -> {
+            try {
+                action.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * Something to run in the pipeline.
+     */
+    private interface IOAction {
+        /**
+         * @throws IOException if it fails.
+         */
+        void run() throws IOException;
+    }
+
+    /**
+     * Checks whether any file failed for some reason.
+     *
+     * @param e the failures.
+     * @param statusCode the HTTP status code to look for, or -1 to look for
+     * the server not being found.
+     * @return whether any file failed that way.
+     */
+    private boolean anyFailure(FileSubmissionException e, int statusCode) {
+        for (IOException failure : e.getFailures().values()) {
+            if (statusCode < 0 ? failure instanceof UnknownHostException
+                : HttpStatusException.hasStatus(failure, statusCode)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
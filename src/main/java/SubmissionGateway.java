@@ -0,0 +1,734 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * A long-running service that takes submissions from students over HTTP and
+ * pushes them to GitHub on their behalf, so that a deadline rush reaches
+ * GitHub as a steady stream from one place instead of every laptop retrying
+ * on its own.
+ *
+ * A student POSTs a zip of their files to /submissions, with their GitHub
+ * credentials as basic authentication, and gets 202 Accepted straight back.
+ * Each student has at most one submission being pushed and one waiting: a
+ * newer bundle replaces the one waiting, and a bundle holding the same files
+ * as the one waiting, being pushed, or last pushed is not queued again.
+ * Submissions are pushed by a fixed number of workers, so however many
+ * students submit at once, no more than that many submissions talk to GitHub
+ * at a time.
+ *
+ * GET /submissions/username reports how the student's latest submission is
+ * going, to that student, and GET /status reports the queue as a whole.
+ * Credentials are checked with GitHub before a submission is queued or
+ * reported on, so no one can replace or read another student's submission.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class SubmissionGateway {
+    private static final String SUBMISSIONS = "/submissions";
+    private static final Pattern USERNAME = Pattern.compile(
+        "[A-Za-z0-9][A-Za-z0-9-]*");
+    private static final long MAX_BUNDLE_BYTES = 100L * 1024 * 1024;
+    private static final long MAX_UNPACKED_BYTES = 1024L * 1024 * 1024;
+    private HttpServer server;
+    private ExecutorService handlers;
+    private ExecutorService workers;
+    private Path directory;
+    private SubmitterFactory submitters;
+    private SubmissionMetrics metrics;
+    private Map<String, Student> students;
+    private AtomicLong received;
+    private AtomicLong deduplicated;
+    private AtomicLong superseded;
+    private AtomicLong succeeded;
+    private AtomicLong failed;
+
+    /**
+     * Makes the submitter that pushes a student's submission.
+     */
+    public interface SubmitterFactory {
+        /**
+         * Makes a submitter for a student, which submits the files named in
+         * the properties file on their behalf.
+         *
+         * @param username the student's GitHub username.
+         * @param password the student's GitHub password.
+         * @return the submitter.
+         */
+        GitHubSubmitter create(String username, String password);
+    }
+
+    /**
+     * Public constructor. Only listens on the loopback address, so that
+     * credentials are never sent in the clear over the network; put it
+     * behind something that terminates TLS to take submissions from
+     * elsewhere.
+     *
+     * @param port the port to listen on, or 0 for any free port.
+     * @param directory where bundles are kept until they are pushed.
+     * @param workers the most submissions that may be pushed at once.
+     * @param submitters makes the submitter for each submission.
+     * @throws IOException if the port could not be listened on.
+     * @throws IllegalArgumentException if workers is less than 1.
+     */
+    public SubmissionGateway(int port, Path directory, int workers,
+        SubmitterFactory submitters) throws IOException {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1, "
+                + "but was " + workers + ".");
+        }
+        this.directory = directory.toAbsolutePath().normalize();
+        this.submitters = submitters;
+        this.students = new HashMap<>();
+        this.received = new AtomicLong();
+        this.deduplicated = new AtomicLong();
+        this.superseded = new AtomicLong();
+        this.succeeded = new AtomicLong();
+        this.failed = new AtomicLong();
+        this.workers = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "gateway-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Reading a bundle only waits on the student's connection, so it is
+        // kept off the workers, which wait on GitHub.
+        this.handlers = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "gateway-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(
+            InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(this.handlers);
+    }
+
+    /**
+     * Sets the metrics shared by every submission, which GET /status
+     * includes.
+     *
+     * @param metrics the metrics, or null to leave them out.
+     */
+    public void setMetrics(SubmissionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts taking submissions.
+     *
+     * @throws IOException if the bundle directory could not be created.
+     */
+    public void start() throws IOException {
+        Files.createDirectories(this.directory);
+        this.server.start();
+    }
+
+    /**
+     * Stops taking submissions, and abandons any that have not been pushed.
+     */
+    public void stop() {
+        this.server.stop(0);
+        this.workers.shutdownNow();
+        this.handlers.shutdownNow();
+    }
+
+    /**
+     * @return the port being listened on.
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Answers a request.
+     *
+     * @param exchange the request.
+     * @throws IOException if the response could not be sent.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals("/status") && method.equals("GET")) {
+                respond(exchange, 200, this::writeStatus);
+                return;
+            }
+            String[] credentials = credentials(exchange);
+            if (credentials == null) {
+                exchange.getResponseHeaders().set("WWW-Authenticate",
+                    "Basic realm=\"GitHub\"");
+                respond(exchange, 401, message("Requires your GitHub "
+                    + "username and password."));
+            } else if (!verify(exchange, credentials[0], credentials[1])) {
+                return;
+            } else if (path.equals(SUBMISSIONS) && method.equals("POST")) {
+                accept(exchange, credentials[0], credentials[1]);
+            } else if (path.equalsIgnoreCase(SUBMISSIONS + "/"
+                + credentials[0]) && method.equals("GET")) {
+                Submission latest = latest(credentials[0]);
+                if (latest == null) {
+                    respond(exchange, 404, message("Nothing submitted yet."));
+                } else {
+                    respond(exchange, 200, latest::writeTo);
+                }
+            } else {
+                respond(exchange, 404, message("Not Found"));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Checks with GitHub that the credentials are the student's, before
+     * anything is queued for them or reported to them, and answers the
+     * request if they are not.
+     *
+     * @param exchange the request.
+     * @param username the student's GitHub username.
+     * @param password the student's GitHub password.
+     * @return whether the credentials are the student's.
+     * @throws IOException if the response could not be sent.
+     */
+    private boolean verify(HttpExchange exchange, String username,
+        String password) throws IOException {
+        try {
+            this.submitters.create(username, password).checkCredentials();
+            return true;
+        } catch (IOException e) {
+            if (HttpStatusException.hasStatus(e, 401, 403)) {
+                exchange.getResponseHeaders().set("WWW-Authenticate",
+                    "Basic realm=\"GitHub\"");
+                respond(exchange, 401, message("GitHub did not accept that "
+                    + "username and password."));
+            } else {
+                respond(exchange, 502, message("Could not reach GitHub to "
+                    + "check your username and password: " + e.getMessage()));
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Takes a bundle, and queues it unless it is already queued, being
+     * pushed, or was the last thing pushed.
+     *
+     * @param exchange the request, whose body is the bundle.
+     * @param username the student's GitHub username.
+     * @param password the student's GitHub password.
+     * @throws IOException if the response could not be sent.
+     */
+    private void accept(HttpExchange exchange, String username,
+        String password) throws IOException {
+        Files.createDirectories(this.directory);
+        Path bundle = Files.createTempFile(this.directory, username + "-",
+            ".zip");
+        String digest;
+        try {
+            save(exchange.getRequestBody(), bundle);
+        } catch (IOException e) {
+            Files.deleteIfExists(bundle);
+            respond(exchange, 413, message(e.getMessage()));
+            return;
+        }
+        try {
+            digest = digest(bundle);
+        } catch (IOException e) {
+            Files.deleteIfExists(bundle);
+            respond(exchange, 400, message(e.getMessage()));
+            return;
+        }
+        this.received.incrementAndGet();
+
+        Submission submission = new Submission(username, password, bundle,
+            digest);
+        Submission replaced = null;
+        boolean run = false;
+        synchronized (this) {
+            Student student = this.students.computeIfAbsent(username,
+                name -> new Student());
+            Submission same = student.find(digest, password);
+            if (same != null) {
+                submission = same;
+            } else {
+                replaced = student.next;
+                if (student.running == null) {
+                    student.running = submission;
+                    run = true;
+                } else {
+                    student.next = submission;
+                }
+            }
+        }
+        if (submission.bundle != bundle) {
+            this.deduplicated.incrementAndGet();
+            Files.deleteIfExists(bundle);
+        }
+        if (replaced != null) {
+            this.superseded.incrementAndGet();
+            replaced.finish("superseded", null);
+            Files.deleteIfExists(replaced.bundle);
+        }
+        if (run) {
+            this.workers.execute(() -> push(username));
+        }
+        exchange.getResponseHeaders().set("Location",
+            SUBMISSIONS + "/" + username);
+        // Files that were already pushed are answered with 200 OK, as there
+        // is nothing left to accept.
+        respond(exchange, submission.state.equals("submitted") ? 200 : 202,
+            submission::writeTo);
+    }
+
+    /**
+     * Pushes the submission a student has running, and then the one waiting
+     * after it, if any.
+     *
+     * @param username the student's GitHub username.
+     */
+    private void push(String username) {
+        Submission submission;
+        synchronized (this) {
+            submission = this.students.get(username).running;
+        }
+        submission.begin();
+        Path staging = this.directory.resolve(username);
+        try {
+            delete(staging);
+            try (InputStream in = Files.newInputStream(submission.bundle)) {
+                unzip(in, staging);
+            }
+            GitHubSubmitter submitter = this.submitters.create(username,
+                submission.password);
+            submitter.setDirectory(staging);
+            try {
+                submitter.createRepository();
+            } catch (IOException e) {
+                if (!HttpStatusException.hasStatus(e, 422)) {
+                    throw e;
+                }
+            }
+            submitter.addCollaborators();
+            submitter.addFiles();
+            this.succeeded.incrementAndGet();
+            submission.finish("submitted", null);
+        } catch (IOException | RuntimeException e) {
+            this.failed.incrementAndGet();
+            submission.finish("failed", e);
+        } finally {
+            try {
+                delete(staging);
+                Files.deleteIfExists(submission.bundle);
+            } catch (IOException e) {
+                // The staging directory is cleared again before the student's
+                // next submission is unpacked into it, and a leftover bundle
+                // only takes up space.
+            }
+        }
+
+        Submission next;
+        synchronized (this) {
+            Student student = this.students.get(username);
+            student.last = submission;
+            student.running = student.next;
+            student.next = null;
+            next = student.running;
+        }
+        if (next != null) {
+            this.workers.execute(() -> push(username));
+        }
+    }
+
+    /**
+     * @param username a student's GitHub username.
+     * @return the student's newest submission, or null if they have not
+     * submitted anything.
+     */
+    private synchronized Submission latest(String username) {
+        Student student = this.students.get(username);
+        if (student == null) {
+            return null;
+        } else if (student.next != null) {
+            return student.next;
+        }
+        return student.running != null ? student.running : student.last;
+    }
+
+    /**
+     * Writes the state of the queue as a whole.
+     *
+     * @param json the writer to write to.
+     * @throws IOException if the JSON could not be written.
+     */
+    private void writeStatus(JsonWriter json) throws IOException {
+        long running = 0;
+        long waiting = 0;
+        synchronized (this) {
+            for (Student student : this.students.values()) {
+                // A submission handed to the workers waits until one is
+                // free.
+                if (student.running != null) {
+                    if (student.running.state.equals("running")) {
+                        running++;
+                    } else {
+                        waiting++;
+                    }
+                }
+                waiting += student.next != null ? 1 : 0;
+            }
+        }
+        json.beginObject()
+            .name("running").value(running)
+            .name("waiting").value(waiting)
+            .name("received").value(this.received.get())
+            .name("deduplicated").value(this.deduplicated.get())
+            .name("superseded").value(this.superseded.get())
+            .name("submitted").value(this.succeeded.get())
+            .name("failed").value(this.failed.get());
+        if (this.metrics != null) {
+            json.name("metrics");
+            this.metrics.writeTo(json);
+        }
+        json.endObject();
+    }
+
+    /**
+     * Reads the student's credentials from the basic authentication header.
+     *
+     * @param exchange the request.
+     * @return the username, in lower case since GitHub usernames are not case
+     * sensitive, and the password, or null if they are missing or the
+     * username is not a GitHub username.
+     */
+    private static String[] credentials(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst(
+            "Authorization");
+        if (header == null || !header.startsWith("Basic ")) {
+            return null;
+        }
+        String decoded;
+        try {
+            decoded = new String(Base64.getDecoder().decode(
+                header.substring(6).trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int colon = decoded.indexOf(':');
+        // The username names a directory, so it has to be checked.
+        if (colon < 0 || !USERNAME.matcher(decoded.substring(0, colon))
+            .matches()) {
+            return null;
+        }
+        return new String[] {decoded.substring(0, colon).toLowerCase(
+            Locale.ROOT), decoded.substring(colon + 1)};
+    }
+
+    /**
+     * Saves a bundle to disk.
+     *
+     * @param in the bundle.
+     * @param file where to save it.
+     * @throws IOException if the bundle could not be read or saved, or is
+     * too big.
+     */
+    private static void save(InputStream in, Path file) throws IOException {
+        long total = 0;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > MAX_BUNDLE_BYTES) {
+                    throw new IOException("Submissions may be at most "
+                        + MAX_BUNDLE_BYTES / (1024 * 1024) + " MB.");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Hashes the names and contents of the files in a bundle. Zipping the
+     * same files again changes the timestamps in the zip, but not this.
+     *
+     * @param bundle the bundle.
+     * @return the SHA-256 of the files, in hex.
+     * @throws IOException if the bundle is not a zip, or unpacks to more
+     * than a GitHub repository should hold.
+     */
+    private static String digest(Path bundle) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        boolean empty = true;
+        long total = 0;
+        try (ZipInputStream zip = new ZipInputStream(
+            Files.newInputStream(bundle))) {
+            byte[] buffer = new byte[8192];
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                empty = false;
+                digest.update(entry.getName().getBytes(
+                    StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                long length = 0;
+                int read;
+                while ((read = zip.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    length += read;
+                    total += read;
+                    if (total > MAX_UNPACKED_BYTES) {
+                        throw new IOException("Submissions may unpack to at "
+                            + "most " + MAX_UNPACKED_BYTES / (1024 * 1024
+                            * 1024) + " GB.");
+                    }
+                }
+                digest.update(String.valueOf(length).getBytes(
+                    StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+        } catch (IllegalArgumentException e) {
+            // Thrown for entry names that are not valid in the zip's
+            // encoding.
+            throw new IOException(e.getMessage(), e);
+        }
+        if (empty) {
+            throw new IOException("Submissions have to be zip files.");
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Unpacks a bundle.
+     *
+     * @param in the zip.
+     * @param target the directory to unpack into.
+     * @throws IOException if the zip could not be read or unpacked, or tries
+     * to write outside of target.
+     */
+    private static void unzip(InputStream in, Path target) throws IOException {
+        Files.createDirectories(target);
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            Path path = target.resolve(entry.getName()).normalize();
+            if (!path.startsWith(target)) {
+                throw new IOException("Zip entry " + entry.getName()
+                    + " is outside of the submission.");
+            }
+            if (entry.isDirectory()) {
+                Files.createDirectories(path);
+            } else {
+                Files.createDirectories(path.getParent());
+                Files.copy(zip, path);
+            }
+        }
+    }
+
+    /**
+     * Deletes a directory and everything in it, if it exists.
+     *
+     * @param path the directory to delete.
+     * @throws IOException if it could not be deleted.
+     */
+    private static void delete(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file,
+                BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir,
+                IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * @param text a message for the student.
+     * @return JSON holding the message.
+     */
+    private static JsonWriter.Content message(String text) {
+        return json -> json.beginObject().name("message").value(text)
+            .endObject();
+    }
+
+    /**
+     * Sends a JSON response.
+     *
+     * @param exchange the request.
+     * @param status the HTTP status code.
+     * @param content the body.
+     * @throws IOException if the response could not be sent.
+     */
+    private static void respond(HttpExchange exchange, int status,
+        JsonWriter.Content content) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(body);
+        content.writeTo(json);
+        json.flush();
+        exchange.getResponseHeaders().set("Content-Type",
+            "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+    }
+
+    /**
+     * The submissions of one student. Guarded by the gateway.
+     */
+    private static class Student {
+        private Submission running;
+        private Submission next;
+        private Submission last;
+
+        /**
+         * Finds a submission that already covers a bundle, so it does not
+         * have to be pushed again. A submission waiting or being pushed only
+         * covers it if it was sent with the same password, so that a
+         * resubmission with a corrected password is not dropped in favor of
+         * one that is going to fail.
+         *
+         * @param digest the SHA-256 of the files in the bundle.
+         * @param password the password the bundle was sent with.
+         * @return the submission waiting or being pushed with the same
+         * bundle and password, or the last one if it pushed the same bundle
+         * and nothing has been submitted since, or null if the bundle is new.
+         */
+        private Submission find(String digest, String password) {
+            if (this.next != null) {
+                return this.next.covers(digest, password) ? this.next : null;
+            } else if (this.running != null) {
+                return this.running.covers(digest, password) ? this.running
+                    : null;
+            } else if (this.last != null && this.last.digest.equals(digest)
+                && this.last.state.equals("submitted")) {
+                return this.last;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A bundle a student submitted, and how pushing it went.
+     */
+    private static class Submission {
+        private String username;
+        private String password;
+        private Path bundle;
+        private String digest;
+        private long receivedMillis;
+        private volatile String state;
+        private volatile String error;
+
+        /**
+         * Constructor for a submission that has just been received.
+         *
+         * @param username the student's GitHub username.
+         * @param password the student's GitHub password.
+         * @param bundle where the bundle was saved.
+         * @param digest the SHA-256 of the files in the bundle.
+         */
+        private Submission(String username, String password, Path bundle,
+            String digest) {
+            this.username = username;
+            this.password = password;
+            this.bundle = bundle;
+            this.digest = digest;
+            this.receivedMillis = System.currentTimeMillis();
+            this.state = "waiting";
+        }
+
+        /**
+         * @param digest the SHA-256 of the files in a bundle.
+         * @param password the password the bundle was sent with.
+         * @return whether this submission pushes the same files with the
+         * same password.
+         */
+        private boolean covers(String digest, String password) {
+            return this.digest.equals(digest)
+                && password.equals(this.password);
+        }
+
+        /**
+         * Marks the submission as being pushed.
+         */
+        private void begin() {
+            this.state = "running";
+        }
+
+        /**
+         * Marks the submission as done with, and forgets the password.
+         *
+         * @param state submitted, failed, or superseded.
+         * @param failure why it failed, or null.
+         */
+        private void finish(String state, Exception failure) {
+            this.password = null;
+            this.error = failure == null ? null : failure.toString();
+            this.state = state;
+        }
+
+        /**
+         * Writes how the submission is going.
+         *
+         * @param json the writer to write to.
+         * @throws IOException if the JSON could not be written.
+         */
+        private void writeTo(JsonWriter json) throws IOException {
+            json.beginObject()
+                .name("username").value(this.username)
+                .name("sha256").value(this.digest)
+                .name("received").value(this.receivedMillis)
+                .name("state").value(this.state);
+            String error = this.error;
+            if (error != null) {
+                json.name("error").value(error);
+            }
+            json.endObject();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A write-ahead journal of a submission in progress, so that a submission
+ * that was cut off can carry on from where it stopped instead of starting
+ * over. Every stage finished, file pushed, and blob uploaded is appended to
+ * the journal and forced to disk as soon as the server confirms it. The
+ * journal is deleted once the whole submission succeeds.
+ *
+ * Each record is a line: stage followed by the name of the stage, file
+ * followed by the blob SHA-1 and name of the file, or blob followed by the
+ * SHA-1 of the blob. A line cut off by a crash is ignored.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class SubmissionJournal {
+    private static final String DIRECTORY = ".github-submit";
+    private Path file;
+    private FileChannel channel;
+    private boolean broken;
+    private Set<String> stages;
+    private Map<String, String> files;
+    private Set<String> blobs;
+
+    /**
+     * Public constructor. Replays the journal if it already exists.
+     *
+     * @param file the file the journal is kept in.
+     * @throws IOException if the journal exists but could not be read.
+     */
+    public SubmissionJournal(Path file) throws IOException {
+        this.file = file;
+        this.stages = new HashSet<>();
+        this.files = new HashMap<>();
+        this.blobs = new HashSet<>();
+        if (Files.exists(file)) {
+            replay();
+        }
+    }
+
+    /**
+     * Loads the journal for a repository.
+     *
+     * @param repositoryName the name of the repository.
+     * @return the journal, which is empty unless a submission was cut off.
+     * @throws IOException if the journal exists but could not be read.
+     */
+    public static SubmissionJournal forRepository(String repositoryName)
+        throws IOException {
+        return new SubmissionJournal(Paths.get(System.getProperty(
+            "user.home"), DIRECTORY, repositoryName + ".journal"));
+    }
+
+    /**
+     * @return whether anything was recorded before this run.
+     */
+    public synchronized boolean hasProgress() {
+        return !this.stages.isEmpty() || !this.files.isEmpty()
+            || !this.blobs.isEmpty();
+    }
+
+    /**
+     * @param stage the name of a stage of the submission.
+     * @return whether the stage was already finished.
+     */
+    public synchronized boolean isDone(String stage) {
+        return this.stages.contains(stage);
+    }
+
+    /**
+     * @param fileName the name of the file in the repository.
+     * @return the blob SHA-1 of what was pushed, or null if it has not been
+     * pushed.
+     */
+    public synchronized String getSha(String fileName) {
+        return this.files.get(fileName);
+    }
+
+    /**
+     * @param sha the SHA-1 of a blob.
+     * @return whether the blob was already uploaded.
+     */
+    public synchronized boolean hasBlob(String sha) {
+        return this.blobs.contains(sha);
+    }
+
+    /**
+     * Records that a stage of the submission finished.
+     *
+     * @param stage the name of the stage.
+     */
+    public synchronized void recordStage(String stage) {
+        if (this.stages.add(stage)) {
+            append("stage " + stage);
+        }
+    }
+
+    /**
+     * Records that a file was pushed.
+     *
+     * @param fileName the name of the file in the repository.
+     * @param sha the blob SHA-1 of what was pushed.
+     */
+    public synchronized void recordFile(String fileName, String sha) {
+        if (!sha.equals(this.files.put(fileName, sha))) {
+            append("file " + sha + " " + fileName);
+        }
+    }
+
+    /**
+     * Records that a blob was uploaded.
+     *
+     * @param sha the SHA-1 of the blob.
+     */
+    public synchronized void recordBlob(String sha) {
+        if (this.blobs.add(sha)) {
+            append("blob " + sha);
+        }
+    }
+
+    /**
+     * Deletes the journal, once the submission it was for has finished.
+     *
+     * @throws IOException if the journal could not be deleted.
+     */
+    public synchronized void delete() throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+            this.channel = null;
+        }
+        this.stages.clear();
+        this.files.clear();
+        this.blobs.clear();
+        Files.deleteIfExists(this.file);
+    }
+
+    /**
+     * Reads every complete record in the journal.
+     *
+     * @throws IOException if the journal could not be read.
+     */
+    private void replay() throws IOException {
+        byte[] bytes = Files.readAllBytes(this.file);
+        // Anything after the last newline was cut off mid-write, and is cut
+        // off the file too so the next record starts on a line of its own.
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        if (end < bytes.length) {
+            try (FileChannel channel = FileChannel.open(this.file,
+                StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+        try (BufferedReader lines = new BufferedReader(new StringReader(
+            new String(bytes, 0, end, StandardCharsets.UTF_8)))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                String[] record = line.split(" ", 3);
+                if (record[0].equals("stage") && record.length == 2) {
+                    this.stages.add(record[1]);
+                } else if (record[0].equals("file") && record.length == 3) {
+                    this.files.put(record[2], record[1]);
+                } else if (record[0].equals("blob") && record.length == 2) {
+                    this.blobs.add(record[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a record and forces it to disk. If the journal cannot be
+     * written, journaling simply stops; the submission itself does not need
+     * the journal to succeed.
+     *
+     * @param record the record, without a newline.
+     */
+    private void append(String record) {
+        if (this.broken) {
+            return;
+        }
+        try {
+            if (this.channel == null) {
+                Files.createDirectories(this.file.getParent());
+                this.channel = FileChannel.open(this.file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            }
+            ByteBuffer bytes = ByteBuffer.wrap((record + "\n").getBytes(
+                StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                this.channel.write(bytes);
+            }
+            this.channel.force(false);
+        } catch (IOException e) {
+            this.broken = true;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Remembers the Git blob SHA-1 of every file last pushed to a repository, so
+ * that files which have not changed since can be skipped on resubmission.
+ * Manifests are kept in the user's home directory rather than next to the
+ * homework, so they never end up being submitted themselves.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class SubmissionManifest {
+    private static final String DIRECTORY = ".github-submit";
+    private Path file;
+    private Properties shas;
+
+    /**
+     * Public constructor. Loads the manifest if it already exists.
+     *
+     * @param file the file the manifest is stored in.
+     * @throws IOException if the manifest exists but could not be read.
+     */
+    public SubmissionManifest(Path file) throws IOException {
+        this.file = file;
+        this.shas = new Properties();
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                this.shas.load(in);
+            }
+        }
+    }
+
+    /**
+     * Constructor for a manifest that is never written to disk.
+     */
+    private SubmissionManifest() {
+        this.shas = new Properties();
+    }
+
+    /**
+     * Loads the manifest for a repository.
+     *
+     * @param repositoryName the name of the repository.
+     * @return the manifest, which is empty if nothing was pushed before.
+     * @throws IOException if the manifest exists but could not be read.
+     */
+    public static SubmissionManifest forRepository(String repositoryName)
+        throws IOException {
+        return new SubmissionManifest(Paths.get(System.getProperty(
+            "user.home"), DIRECTORY, repositoryName + ".manifest"));
+    }
+
+    /**
+     * @param fileName the name of the file in the repository.
+     * @return the blob SHA-1 the file had when it was last pushed, or null if
+     * it has not been pushed.
+     */
+    public synchronized String getSha(String fileName) {
+        return this.shas.getProperty(fileName);
+    }
+
+    /**
+     * Records that a file was pushed.
+     *
+     * @param fileName the name of the file in the repository.
+     * @param sha the blob SHA-1 of what was pushed.
+     */
+    public synchronized void setSha(String fileName, String sha) {
+        this.shas.setProperty(fileName, sha);
+    }
+
+    /**
+     * @return a copy of this manifest that is never written to disk, for
+     * working out what a submission would do without changing what the next
+     * one does.
+     */
+    public synchronized SubmissionManifest copy() {
+        SubmissionManifest copy = new SubmissionManifest();
+        copy.shas.putAll(this.shas);
+        return copy;
+    }
+
+    /**
+     * Writes the manifest to disk. The old manifest is only replaced once the
+     * new one has been written completely. Copies are not written.
+     *
+     * @throws IOException if the manifest could not be written.
+     */
+    public synchronized void save() throws IOException {
+        if (this.file == null) {
+            return;
+        }
+        Files.createDirectories(this.file.getParent());
+        Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            this.shas.store(out, "Files last pushed by the submission tool");
+        }
+        Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
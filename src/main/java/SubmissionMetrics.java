@@ -0,0 +1,407 @@
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records where the time of a submission went: every request sent, how long
+ * each stage of the submission took, and how long each file took. The
+ * record can be written out as a JSON report, to be gathered from many
+ * students and compared.
+ *
+ * Safe to record into from many threads at once.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class SubmissionMetrics {
+    private long startMillis;
+    private long startNanos;
+    private List<Request> requests;
+    private Map<String, Long> stages;
+    private List<FileTiming> files;
+
+    /**
+     * Public constructor. Starts the clock for the whole submission.
+     */
+    public SubmissionMetrics() {
+        this.startMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+        this.requests = new ArrayList<>();
+        this.stages = new LinkedHashMap<>();
+        this.files = new ArrayList<>();
+    }
+
+    /**
+     * Records a request once it has finished, whether or not it succeeded.
+     *
+     * @param request the request.
+     */
+    public synchronized void record(Request request) {
+        this.requests.add(request);
+    }
+
+    /**
+     * Records how long a stage of the submission took. Stages recorded more
+     * than once are added up.
+     *
+     * @param stage the name of the stage.
+     * @param nanos how long the stage took, in nanoseconds.
+     */
+    public synchronized void recordStage(String stage, long nanos) {
+        Long total = this.stages.get(stage);
+        this.stages.put(stage, total == null ? nanos : total + nanos);
+    }
+
+    /**
+     * Records how long a single file took to submit.
+     *
+     * @param fileName the name of the file.
+     * @param bytes the size of the file.
+     * @param nanos how long the file took, in nanoseconds.
+     */
+    public synchronized void recordFile(String fileName, long bytes,
+        long nanos) {
+        this.files.add(new FileTiming(fileName, bytes, nanos));
+    }
+
+    /**
+     * Writes the report to a file.
+     *
+     * @param file where to write the report.
+     * @throws IOException if the report could not be written.
+     */
+    public void writeReport(Path file) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        try {
+            JsonWriter json = new JsonWriter(out);
+            writeTo(json);
+            json.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the report: totals per stage and per endpoint, then every
+     * request and every file. Times are in microseconds.
+     *
+     * @param json where to write the report.
+     * @throws IOException if the report could not be written.
+     */
+    public synchronized void writeTo(JsonWriter json) throws IOException {
+        json.beginObject()
+            .name("startedAt").value(this.startMillis)
+            .name("elapsedMicros").value(
+                micros(System.nanoTime() - this.startNanos));
+
+        json.name("stages").beginArray();
+        for (Map.Entry<String, Long> stage : this.stages.entrySet()) {
+            json.beginObject()
+                .name("stage").value(stage.getKey())
+                .name("micros").value(micros(stage.getValue()))
+                .endObject();
+        }
+        json.endArray();
+
+        Map<String, long[]> endpoints = new TreeMap<>();
+        for (Request request : this.requests) {
+            String key = request.verb + " " + request.endpoint;
+            long[] totals = endpoints.get(key);
+            if (totals == null) {
+                totals = new long[6];
+                endpoints.put(key, totals);
+            }
+            totals[0]++;
+            totals[1] += request.retries;
+            totals[2] += request.status >= 200 && request.status < 400 ? 0 : 1;
+            totals[3] += request.totalNanos;
+            totals[4] += request.bytesOut;
+            totals[5] += request.bytesIn;
+        }
+        json.name("endpoints").beginArray();
+        for (Map.Entry<String, long[]> endpoint : endpoints.entrySet()) {
+            long[] totals = endpoint.getValue();
+            json.beginObject()
+                .name("endpoint").value(endpoint.getKey())
+                .name("requests").value(totals[0])
+                .name("retries").value(totals[1])
+                .name("failures").value(totals[2])
+                .name("totalMicros").value(micros(totals[3]))
+                .name("bytesOut").value(totals[4])
+                .name("bytesIn").value(totals[5])
+                .endObject();
+        }
+        json.endArray();
+
+        json.name("requests").beginArray();
+        for (Request request : this.requests) {
+            request.writeTo(json);
+        }
+        json.endArray();
+
+        json.name("files").beginArray();
+        for (FileTiming file : this.files) {
+            json.beginObject()
+                .name("file").value(file.fileName)
+                .name("bytes").value(file.bytes)
+                .name("micros").value(micros(file.nanos))
+                .endObject();
+        }
+        json.endArray().endObject();
+    }
+
+    /**
+     * Turns a url into the endpoint it is for, leaving out the owner,
+     * repository, file paths and SHAs, so that requests to the same endpoint
+     * can be added up.
+     *
+     * @param url the url, or an extension to the host url.
+     * @return the endpoint, e.g. /repos/{owner}/{repo}/contents/{path}.
+     */
+    public static String endpoint(String url) {
+        int query = url.indexOf('?');
+        String[] parts = (query < 0 ? url : url.substring(0, query))
+            .split("/", -1);
+        if (parts.length < 4 || !parts[1].equals("repos")) {
+            return query < 0 ? url : url.substring(0, query);
+        }
+        StringBuilder endpoint = new StringBuilder("/repos/{owner}/{repo}");
+        for (int i = 4; i < parts.length; i++) {
+            String part = parts[i];
+            String previous = parts[i - 1];
+            if (previous.equals("contents")) {
+                endpoint.append("/{path}");
+                break;
+            } else if (previous.equals("heads")) {
+                endpoint.append("/{branch}");
+                break;
+            } else if (previous.equals("collaborators")) {
+                endpoint.append("/{username}");
+            } else if (i == 6 && parts[4].equals("git")
+                && !previous.startsWith("ref")) {
+                endpoint.append("/{sha}");
+            } else {
+                endpoint.append('/').append(part);
+            }
+        }
+        return endpoint.toString();
+    }
+
+    /**
+     * @param nanos a time in nanoseconds.
+     * @return the time in microseconds.
+     */
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+
+    /**
+     * The timing of a single request, across all of its attempts. The
+     * phases (looking up the host, connecting, uploading, waiting for the
+     * first byte, and downloading) are those of the last attempt, while the
+     * total includes every attempt and the waits between them.
+     */
+    public static class Request {
+        private String verb;
+        private String endpoint;
+        private int status;
+        private int retries;
+        private long start;
+        private long phaseStart;
+        private long lookupNanos;
+        private long connectNanos;
+        private long uploadNanos;
+        private long firstByteNanos;
+        private long downloadNanos;
+        private long totalNanos;
+        private long bytesOut;
+        private long bytesIn;
+
+        /**
+         * Public constructor. Starts the clock for the request.
+         *
+         * @param verb the kind of request (e.g GET, POST, PUT, PATCH, etc.).
+         * @param url the url, or an extension to the host url.
+         */
+        public Request(String verb, String url) {
+            this.verb = verb.toUpperCase();
+            this.endpoint = endpoint(url);
+            this.status = -1;
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Marks the start of another attempt at the request.
+         *
+         * @param attempt which attempt this is, starting from 1.
+         */
+        public void attempt(int attempt) {
+            this.retries = attempt - 1;
+            this.status = -1;
+            this.lookupNanos = 0;
+            this.connectNanos = 0;
+            this.uploadNanos = 0;
+            this.firstByteNanos = 0;
+            this.downloadNanos = 0;
+            this.bytesOut = 0;
+            this.bytesIn = 0;
+            this.phaseStart = System.nanoTime();
+        }
+
+        /**
+         * Marks that the host has been looked up.
+         */
+        public void lookedUp() {
+            this.lookupNanos = lap();
+        }
+
+        /**
+         * Marks that the connection is open.
+         */
+        public void connected() {
+            this.connectNanos = lap();
+        }
+
+        /**
+         * Marks that the body has been sent.
+         */
+        public void uploaded() {
+            this.uploadNanos = lap();
+        }
+
+        /**
+         * Marks that the server has started to respond.
+         *
+         * @param status the status the server responded with.
+         */
+        public void respondedWith(int status) {
+            this.firstByteNanos = lap();
+            this.status = status;
+        }
+
+        /**
+         * Marks that the whole response has been read, or that the request
+         * failed, and stops the clock.
+         */
+        public void finished() {
+            if (this.status >= 0) {
+                this.downloadNanos = lap();
+            }
+            this.totalNanos = System.nanoTime() - this.start;
+        }
+
+        /**
+         * Counts the bytes written to a stream as sent.
+         *
+         * @param out the stream the body is written to.
+         * @return a stream that counts what goes through it.
+         */
+        public OutputStream countOut(OutputStream out) {
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    bytesOut++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len)
+                    throws IOException {
+                    out.write(b, off, len);
+                    bytesOut += len;
+                }
+            };
+        }
+
+        /**
+         * Counts the bytes read from a stream as received.
+         *
+         * @param in the stream the response is read from.
+         * @return a stream that counts what goes through it.
+         */
+        public InputStream countIn(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = in.read();
+                    if (b >= 0) {
+                        bytesIn++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len)
+                    throws IOException {
+                    int read = in.read(b, off, len);
+                    if (read > 0) {
+                        bytesIn += read;
+                    }
+                    return read;
+                }
+            };
+        }
+
+        /**
+         * @return how long since the last phase ended, in nanoseconds.
+         */
+        private long lap() {
+            long now = System.nanoTime();
+            long lap = now - this.phaseStart;
+            this.phaseStart = now;
+            return lap;
+        }
+
+        /**
+         * Writes the request into a report.
+         *
+         * @param json where to write the request.
+         * @throws IOException if the request could not be written.
+         */
+        private void writeTo(JsonWriter json) throws IOException {
+            json.beginObject()
+                .name("verb").value(this.verb)
+                .name("endpoint").value(this.endpoint)
+                .name("status").value(this.status)
+                .name("retries").value(this.retries)
+                .name("lookupMicros").value(micros(this.lookupNanos))
+                .name("connectMicros").value(micros(this.connectNanos))
+                .name("uploadMicros").value(micros(this.uploadNanos))
+                .name("firstByteMicros").value(micros(this.firstByteNanos))
+                .name("downloadMicros").value(micros(this.downloadNanos))
+                .name("totalMicros").value(micros(this.totalNanos))
+                .name("bytesOut").value(this.bytesOut)
+                .name("bytesIn").value(this.bytesIn)
+                .endObject();
+        }
+    }
+
+    /**
+     * How long a single file took to submit.
+     */
+    private static class FileTiming {
+        private String fileName;
+        private long bytes;
+        private long nanos;
+
+        /**
+         * @param fileName the name of the file.
+         * @param bytes the size of the file.
+         * @param nanos how long the file took, in nanoseconds.
+         */
+        FileTiming(String fileName, long bytes, long nanos) {
+            this.fileName = fileName;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.Map;
+
+/**
+ * What a submission has to do to each file, worked out by comparing the blob
+ * SHA-1 of every local file with the tree on the repository's branch: whether
+ * it has to be added, modified, or is already up to date.
+ *
+ * If GitHub truncated the tree because the repository is too big, files
+ * missing from it may or may not be in the repository, and submitting them
+ * has to find out which.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class SubmissionPlan {
+    private Map<String, String> localShas;
+    private Map<String, String> remoteShas;
+    private boolean complete;
+
+    /**
+     * Public constructor.
+     *
+     * @param localShas the blob SHA-1 of every file to submit, by name, in
+     * the order to submit them.
+     * @param remoteShas the blob SHA-1 of every file in the repository, by
+     * path.
+     * @param complete whether remoteShas holds every file in the repository.
+     */
+    public SubmissionPlan(Map<String, String> localShas,
+        Map<String, String> remoteShas, boolean complete) {
+        this.localShas = localShas;
+        this.remoteShas = remoteShas;
+        this.complete = complete;
+    }
+
+    /**
+     * @param fileName the name of a file to submit.
+     * @return the blob SHA-1 of the local file.
+     */
+    public String getLocalSha(String fileName) {
+        return this.localShas.get(fileName);
+    }
+
+    /**
+     * @param fileName the name of a file to submit.
+     * @return the blob SHA-1 of the file in the repository, or null if it is
+     * not there or not known to be there.
+     */
+    public String getRemoteSha(String fileName) {
+        return this.remoteShas.get(fileName);
+    }
+
+    /**
+     * @param fileName the name of a file to submit.
+     * @return whether it is known for sure whether the file is in the
+     * repository.
+     */
+    public boolean isKnown(String fileName) {
+        return this.complete || this.remoteShas.containsKey(fileName);
+    }
+}
@@ -19,12 +19,19 @@ public class SubmissionTool {
         "helpEmails",
         "fileNames"
     };
+    private static final String COLLECT_DIRECTORY = "submissions";
+    private static final int GATEWAY_PORT = 8331;
 
     /**
      * Main entry point of the program. Will check the properties file and
      * then pass it along to the control logic if it is all good.
      *
-     * @param args Unused.
+     * @param args Empty to submit, --watch to submit and then submit
+     * again every time the files are saved, or --dry-run to show what
+     * submitting would do without doing it. For the head TA, --collect
+     * followed by an optional directory collects every student's submission
+     * instead, and --gateway followed by an optional port runs a gateway
+     * that takes submissions from students and pushes them to GitHub.
      */
     public static void main(String[] args) {
         InputStream input =
@@ -47,7 +54,26 @@ public class SubmissionTool {
                     }
                 }
 
-                if (allPropertiesNonNull) {
+                if (!allPropertiesNonNull) {
+                    return;
+                } else if (args.length > 0 && args[0].equals("--collect")) {
+                    new SubmissionController().collect(properties,
+                        args.length > 1 ? args[1] : COLLECT_DIRECTORY);
+                } else if (args.length > 0 && args[0].equals("--gateway")) {
+                    int port = args.length > 1 ? parsePort(args[1])
+                        : GATEWAY_PORT;
+                    if (port < 0) {
+                        System.out.println("Aborting. " + args[1]
+                            + " is not a port number! Usage: --gateway "
+                            + "[port], where port is from 0 to 65535.");
+                        return;
+                    }
+                    new SubmissionController().serve(properties, port);
+                } else if (args.length > 0 && args[0].equals("--dry-run")) {
+                    new SubmissionController().dryRun(properties);
+                } else if (args.length > 0 && args[0].equals("--watch")) {
+                    new SubmissionController().watch(properties);
+                } else {
                     new SubmissionController().start(properties);
                 }
             } catch (IOException e) {
@@ -55,4 +81,17 @@ public class SubmissionTool {
             }
         }
     }
+
+    /**
+     * @param port a port number, as given on the command line.
+     * @return the port number, or -1 if it is not one.
+     */
+    private static int parsePort(String port) {
+        try {
+            int number = Integer.parseInt(port);
+            return number >= 0 && number <= 65535 ? number : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 }
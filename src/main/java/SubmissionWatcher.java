@@ -0,0 +1,180 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the files of a submission for changes, so they can be submitted
+ * again as soon as they are saved. Every directory the file names could
+ * match is watched, along with any directories created in them later,
+ * except for directories the scanner ignores.
+ *
+ * Editors often save a file as a burst of events, and a student may save
+ * several files at once, so changes are only handed out once nothing has
+ * changed for a while, all together.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class SubmissionWatcher implements Closeable {
+    private Path base;
+    private FileScanner scanner;
+    private long quietMillis;
+    private WatchService service;
+    private Map<WatchKey, Path> directories;
+
+    /**
+     * Public constructor. Starts watching straight away.
+     *
+     * @param base the directory file names are relative to.
+     * @param scanner decides which directories are not worth watching.
+     * @param quietMillis how long nothing has to change for before changes
+     * are handed out.
+     * @param fileNames the file names from the properties file.
+     * @throws IOException if the directories could not be watched.
+     */
+    public SubmissionWatcher(Path base, FileScanner scanner, long quietMillis,
+        String... fileNames) throws IOException {
+        this.base = base.toAbsolutePath().normalize();
+        this.scanner = scanner;
+        this.quietMillis = quietMillis;
+        this.service = FileSystems.getDefault().newWatchService();
+        this.directories = new HashMap<>();
+        for (String fileName : fileNames) {
+            if (fileName.isEmpty() || fileName.startsWith("!")) {
+                continue;
+            }
+            // Globs can match anywhere under the base directory.
+            Path path = FileScanner.isGlob(fileName) ? this.base
+                : this.base.resolve(fileName).normalize();
+            if (Files.isDirectory(path)) {
+                watchTree(path);
+            } else if (path.getParent() != null
+                && Files.isDirectory(path.getParent())) {
+                watch(path.getParent());
+            }
+        }
+    }
+
+    /**
+     * Waits for files to change, and then for them to stop changing.
+     *
+     * @return the paths of everything that changed relative to the base
+     * directory, using / as the separator, or null if too much changed at
+     * once to keep track of, and everything has to be checked.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    public Set<String> awaitChanges() throws InterruptedIOException {
+        Set<String> changed = new TreeSet<>();
+        boolean overflowed = false;
+        try {
+            WatchKey key = this.service.take();
+            while (key != null) {
+                overflowed |= collect(key, changed);
+                key = this.service.poll(this.quietMillis,
+                    TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while watching "
+                + "files.");
+        }
+        return overflowed ? null : changed;
+    }
+
+    /**
+     * Stops watching.
+     *
+     * @throws IOException if the watch could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.service.close();
+    }
+
+    /**
+     * Takes the events off a key, watching any new directories.
+     *
+     * @param key the key that was signalled.
+     * @param changed where to add the paths that changed.
+     * @return whether events were lost.
+     */
+    private boolean collect(WatchKey key, Set<String> changed) {
+        Path directory = this.directories.get(key);
+        boolean overflowed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowed = true;
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                && Files.isDirectory(path)) {
+                try {
+                    watchTree(path);
+                } catch (IOException e) {
+                    // Files in it will just not be noticed until the next
+                    // change that is.
+                    overflowed = true;
+                }
+            }
+            changed.add(this.base.relativize(path).toString()
+                .replace(path.getFileSystem().getSeparator(), "/"));
+        }
+        if (!key.reset()) {
+            this.directories.remove(key);
+        }
+        return overflowed;
+    }
+
+    /**
+     * Watches a directory and every directory under it that is not ignored.
+     *
+     * @param root the directory.
+     * @throws IOException if a directory could not be watched.
+     */
+    private void watchTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir,
+                BasicFileAttributes attributes) throws IOException {
+                if (!dir.equals(root) && scanner.isIgnored(dir, true)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                watch(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Watches a single directory.
+     *
+     * @param directory the directory.
+     * @throws IOException if the directory could not be watched.
+     */
+    private void watch(Path directory) throws IOException {
+        if (this.directories.containsValue(directory)) {
+            return;
+        }
+        WatchKey key = directory.register(this.service,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE);
+        this.directories.put(key, directory);
+    }
+}
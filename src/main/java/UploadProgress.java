@@ -0,0 +1,42 @@
+import java.util.Map;
+
+/**
+ * Receives the progress of a file as it is uploaded, and of the submission
+ * as a whole. Called from whichever thread is uploading the file, so it must
+ * be safe to call from many threads at once.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public interface UploadProgress {
+
+    /**
+     * Called as the body carrying a file is written to the server, about
+     * once for every hundredth of it and once at the end. Starts again from
+     * 0 if the upload is retried.
+     *
+     * @param fileName the name of the file.
+     * @param sent how many bytes of the body have been written.
+     * @param total how many bytes the body holds in all, or -1 if it is not
+     * known.
+     */
+    void progress(String fileName, long sent, long total);
+
+    /**
+     * Called before files are pushed, with every file that is going to be.
+     * Files that are already up to date are left out.
+     *
+     * @param sizes the size in bytes of each file to push, by name.
+     */
+    default void starting(Map<String, Long> sizes) {
+    }
+
+    /**
+     * Called once a file has been sent and the server has accepted it. May
+     * be called for files that were not among those starting was told of.
+     *
+     * @param fileName the name of the file.
+     */
+    default void finished(String fileName) {
+    }
+}
@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 /**
@@ -52,6 +55,13 @@ public class UserInterface {
         return password;
     }
 
+    /**
+     * Prints a message for when carrying on a submission that was cut off.
+     */
+    public void printResumingMessage() {
+        System.out.println("\nResuming the last submission where it stopped.");
+    }
+
     /**
      * Prints a message for when creating the repository.
      */
@@ -73,6 +83,94 @@ public class UserInterface {
         System.out.println("\nSubmitting files...");
     }
 
+    /**
+     * Creates the display for the progress of the files being submitted,
+     * which is redrawn in place when the program is run from a terminal.
+     *
+     * @return the display, which is not shown until asked to be.
+     */
+    public ProgressDisplay createProgressDisplay() {
+        return new ProgressDisplay(System.out, System.console() != null);
+    }
+
+    /**
+     * Prints a message for when working out what a submission would do.
+     */
+    public void printPlanningMessage() {
+        System.out.println("\nWorking out what submitting would do. Nothing "
+            + "will be changed on GitHub...");
+    }
+
+    /**
+     * Prints what a submission would do.
+     *
+     * @param repositoryName the name of the repository.
+     * @param requests the requests the submission would send.
+     * @param limit how many requests GitHub allows an hour, or null if not
+     * known.
+     * @param remaining how many of them are left, or null if not known.
+     * @param estimateMillis roughly how long the submission would take.
+     */
+    public void printDryRunReport(String repositoryName,
+        List<DryRunHttpsService.Request> requests, String limit,
+        String remaining, long estimateMillis) {
+        long writes = 0;
+        long bytes = 0;
+        System.out.println("\nSubmitting to " + repositoryName
+            + " would send:");
+        for (DryRunHttpsService.Request request : requests) {
+            if (request.isWrite()) {
+                writes++;
+                bytes += request.getBytes();
+                System.out.printf("    %-6s %s (%,d bytes)%n",
+                    request.getVerb(), request.getUrl(), request.getBytes());
+            } else {
+                System.out.printf("    %-6s %s%n", request.getVerb(),
+                    request.getUrl());
+            }
+        }
+        System.out.printf("%nThat is %d requests, %d of them writes, with "
+            + "%,d bytes of request bodies.%n", requests.size(), writes,
+            bytes);
+        if (limit != null && remaining != null) {
+            System.out.printf("It would use %d of the %s requests GitHub "
+                + "allows an hour (%s left right now).%n", requests.size(),
+                limit, remaining);
+        }
+        System.out.printf("It would take roughly %.1f seconds, not counting "
+            + "the time to upload the files.%n", estimateMillis / 1000.0);
+    }
+
+    /**
+     * Prints a message for when watching the files for changes.
+     */
+    public void printWatchingMessage() {
+        System.out.println("\nWatching your files. They are submitted again "
+            + "every time you save them. Press Ctrl+C to stop.");
+    }
+
+    /**
+     * Prints a message for when the gateway is taking submissions.
+     *
+     * @param port the port it is listening on.
+     */
+    public void printServingMessage(int port) {
+        System.out.println("Taking submissions at http://localhost:" + port
+            + "/submissions. Press Ctrl+C to stop.");
+    }
+
+    /**
+     * Prints a message for when changed files were submitted again.
+     *
+     * @param fileNames the files that changed.
+     * @param millis how long submitting them took.
+     */
+    public void printResubmittedMessage(List<String> fileNames,
+        long millis) {
+        System.out.println("Submitted " + String.join(", ", fileNames)
+            + " (" + millis + " ms)");
+    }
+
     /**
      * Prints a message for when a file is missing.
      *
@@ -82,6 +180,55 @@ public class UserInterface {
         System.out.println(message);
     }
 
+    /**
+     * Prints a message listing every file that could not be submitted.
+     *
+     * @param failures the names of the files that failed, mapped to the
+     * reason why.
+     */
+    public void printFileFailuresMessage(Map<String, IOException> failures) {
+        System.out.println("These files could not be submitted:");
+        for (Map.Entry<String, IOException> failure : failures.entrySet()) {
+            System.out.println("    " + failure.getKey() + ": "
+                + failure.getValue().getMessage());
+        }
+    }
+
+    /**
+     * Prints a message for when looking for submissions to collect.
+     */
+    public void printFindingSubmissionsMessage() {
+        System.out.println("\nFinding submissions...");
+    }
+
+    /**
+     * Prints a message for when collecting submissions.
+     *
+     * @param count how many submissions were found.
+     * @param directory where they are being collected to.
+     */
+    public void printCollectingMessage(int count, String directory) {
+        System.out.println("Found " + count + " submissions. Collecting "
+            + "them into " + directory + "...");
+    }
+
+    /**
+     * Prints a message listing every submission that could not be
+     * collected.
+     *
+     * @param failures the repositories that failed, mapped to the reason
+     * why.
+     */
+    public void printCollectionFailuresMessage(
+        Map<String, IOException> failures) {
+        System.out.println("These submissions could not be collected. Run "
+            + "again to retry just these:");
+        for (Map.Entry<String, IOException> failure : failures.entrySet()) {
+            System.out.println("    " + failure.getKey() + ": "
+                + failure.getValue().getMessage());
+        }
+    }
+
     /**
      * Prints a message for when the repository already exists.
      */
@@ -152,6 +299,16 @@ public class UserInterface {
             + "honor code.");
     }
 
+    /**
+     * Prints a message for when files were pushed, but the head TA could not
+     * be given access to the repository.
+     */
+    public void printPushedWithoutAccessMessage() {
+        System.out.println("\nYour files were pushed, but the head TA could "
+            + "not be given access to your repository, so it cannot be "
+            + "graded yet. Run this tool again to finish submitting.");
+    }
+
     /**
      * Prints a message for when the submission fails.
      */
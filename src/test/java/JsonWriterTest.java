@@ -0,0 +1,76 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+
+/**
+ * Tests for JsonWriter's streaming of file text.
+ *
+ * @author Jim Harris
+ * @version 1.0 10/17/26
+ */
+public class JsonWriterTest {
+    private static final String GRINNING_FACE = "\uD83D\uDE00";
+
+    /**
+     * A character outside the Basic Multilingual Plane whose surrogate pair
+     * straddles the end of the first 8K chunk is still written as one UTF-8
+     * sequence, not as two lone surrogates.
+     *
+     * @throws IOException if the JSON could not be written.
+     */
+    @Test
+    public void textValueKeepsSurrogatePairSplitBetweenChunks()
+        throws IOException {
+        String text = repeat('a', 8191) + GRINNING_FACE + "b";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(out);
+        json.textValue(new StringReader(text));
+        json.flush();
+        assertEquals("\"" + text + "\"", new String(out.toByteArray(),
+            StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The same, read from a file.
+     *
+     * @throws IOException if the file could not be written or read.
+     */
+    @Test
+    public void textValueOfFileKeepsSurrogatePairs() throws IOException {
+        String text = repeat('a', 8191) + GRINNING_FACE + repeat('b', 8190)
+            + GRINNING_FACE;
+        Path directory = Files.createTempDirectory("json-writer-test");
+        Path file = directory.resolve("Emoji.java");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            JsonWriter json = new JsonWriter(out);
+            json.textValue(new FileContent(directory, "Emoji.java"));
+            json.flush();
+            assertEquals("\"" + text + "\"", new String(out.toByteArray(),
+                StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * @param c a character.
+     * @param count how many times to repeat it.
+     * @return the character repeated.
+     */
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}